@@ -0,0 +1,214 @@
+package gitlet;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the gitlet commands and of the hashing and
+ *  encoding under them, run against a SyntheticRepo built in the
+ *  working directory at the start of every fork. Each command runs on
+ *  a fresh Gitlet, as it does from the command line or the Daemon, but
+ *  in a warm JVM; the startup target of gitlet/Makefile measures cold
+ *  starts.
+ *
+ *  The shape of the repository is set with JMH's -p option, as in
+ *  -p files=1000 -p commits=200 -p branches=8 -p fileSize=65536.
+ *  Commands that change the repository leave it in a state the next
+ *  invocation can repeat from; commit and merge add a commit each time,
+ *  so history grows slowly over a fork.
+ *  @author Mengzhu Sun
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitletBenchmarks {
+
+    /** The synthetic repository and what the benchmarks need of it. */
+    @State(Scope.Benchmark)
+    public static class Repo {
+        /** The number of files. */
+        @Param("100")
+        int files;
+        /** The number of commits on master. */
+        @Param("50")
+        int commits;
+        /** The number of other branches. */
+        @Param("4")
+        int branches;
+        /** The size of each file in bytes. */
+        @Param("1024")
+        int fileSize;
+
+        /** The builder, also used to rewrite files. */
+        SyntheticRepo builder;
+        /** The head of master once the repository is built. */
+        Commit master;
+        /** The head of the branch b1. */
+        Commit branch;
+        /** The encoding of master. */
+        byte[] encoded;
+        /** Random contents the size of a file. */
+        byte[] contents;
+        /** The branch checkout goes to next. */
+        String nextBranch;
+        /** The commit reset goes to next. */
+        String nextCommit;
+
+        /** Build the repository and silence the commands' output. */
+        @Setup(Level.Trial)
+        public void build() {
+            builder = new SyntheticRepo(fileSize);
+            builder.build(files, commits, Math.max(1, branches));
+            Gitlet g = new Gitlet();
+            master = g.deserializeBranch("master");
+            branch = g.deserializeBranch(SyntheticRepo.branchName(1));
+            encoded = master.encode();
+            contents = new byte[fileSize];
+            new Random(0).nextBytes(contents);
+            nextBranch = SyntheticRepo.branchName(1);
+            nextCommit = master.getParent1ID();
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    /** Gives file 0 new contents before each add. */
+    @State(Scope.Benchmark)
+    public static class Modified {
+        /** Rewrite file 0 of R.
+         * @param r r */
+        @Setup(Level.Invocation)
+        public void modify(Repo r) {
+            r.builder.write(SyntheticRepo.fileName(0));
+        }
+    }
+
+    /** Stages a new version of file 0 before each commit. */
+    @State(Scope.Benchmark)
+    public static class Staged {
+        /** Rewrite and add file 0 of R.
+         * @param r r */
+        @Setup(Level.Invocation)
+        public void stage(Repo r) {
+            r.builder.write(SyntheticRepo.fileName(0));
+            new Gitlet().add(SyntheticRepo.fileName(0));
+        }
+    }
+
+    /** Puts master back where it was built before each merge. */
+    @State(Scope.Benchmark)
+    public static class Unmerged {
+        /** Reset R to the head of master it was built with.
+         * @param r r */
+        @Setup(Level.Invocation)
+        public void unmerge(Repo r) {
+            new Gitlet().reset(r.master.getCommitID());
+        }
+    }
+
+    /** Stage a changed file.
+     * @param r r
+     * @param m m */
+    @Benchmark
+    public void add(Repo r, Modified m) {
+        new Gitlet().add(SyntheticRepo.fileName(0));
+    }
+
+    /** Commit one staged file.
+     * @param r r
+     * @param s s */
+    @Benchmark
+    public void commit(Repo r, Staged s) {
+        new Gitlet().commit("benchmark");
+    }
+
+    /** Report the status of a clean working directory.
+     * @param r r */
+    @Benchmark
+    public void status(Repo r) {
+        new Gitlet().status();
+    }
+
+    /** Print the history of master.
+     * @param r r */
+    @Benchmark
+    public void log(Repo r) {
+        new Gitlet().log();
+    }
+
+    /** Switch between master and b1.
+     * @param r r */
+    @Benchmark
+    public void checkoutBranch(Repo r) {
+        new Gitlet().checkoutBranch(r.nextBranch);
+        r.nextBranch = r.nextBranch.equals("master")
+            ? SyntheticRepo.branchName(1) : "master";
+    }
+
+    /** Move master back and forth between its head and its parent.
+     * @param r r */
+    @Benchmark
+    public void reset(Repo r) {
+        new Gitlet().reset(r.nextCommit);
+        r.nextCommit = r.nextCommit.equals(r.master.getCommitID())
+            ? r.master.getParent1ID() : r.master.getCommitID();
+    }
+
+    /** Merge b1 into master.
+     * @param r r
+     * @param u u */
+    @Benchmark
+    public void merge(Repo r, Unmerged u) {
+        new Gitlet().merge(SyntheticRepo.branchName(1));
+    }
+
+    /** @return the split point of master and b1.
+     * @param r r */
+    @Benchmark
+    public Commit splitPoint(Repo r) {
+        return new Gitlet().splitPoint(r.master, r.branch);
+    }
+
+    /** @return the SHA-1 of the contents of a file.
+     * @param r r */
+    @Benchmark
+    public String sha1(Repo r) {
+        return Utils.sha1(r.contents);
+    }
+
+    /** @return the encoding of the head of master.
+     * @param r r */
+    @Benchmark
+    public byte[] encodeCommit(Repo r) {
+        return r.master.encode();
+    }
+
+    /** @return the head of master, decoded.
+     * @param r r */
+    @Benchmark
+    public Commit decodeCommit(Repo r) {
+        return Commit.decode(r.encoded, true);
+    }
+
+    /** @return the head of master, decoded without its file map.
+     * @param r r */
+    @Benchmark
+    public Commit decodeCommitHeader(Repo r) {
+        return Commit.decode(r.encoded, false);
+    }
+}
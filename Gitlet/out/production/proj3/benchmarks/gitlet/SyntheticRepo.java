@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Random;
+
+/** Builds a repository of made-up files and history for the benchmarks,
+ *  through the same commands a user would run. Gitlet reads user.dir
+ *  once, when its classes load, and opens files by names relative to
+ *  the working directory of the process, so the repository is always
+ *  built in that directory, which the JVM must be started in.
+ *
+ *  The master branch has COMMITS commits. The first adds FILES files of
+ *  SIZE random bytes each; every later one rewrites one of them. Every
+ *  COMMITS / (BRANCHES + 1) commits a branch b1, b2, ... is created,
+ *  and each branch then gets two commits of its own, adding a file that
+ *  master does not have, so that merging any of them into master is
+ *  free of conflicts.
+ *  @author Mengzhu Sun
+ */
+class SyntheticRepo {
+
+    /** The file in .gitlet that marks a repository built here, which may
+     *  be deleted and built again. */
+    static final String MARKER = "synthetic";
+
+    /** The directory of the repository. */
+    private final File _dir = new File(System.getProperty("user.dir"));
+    /** The source of the contents, seeded so every build is the same. */
+    private final Random _random = new Random(61);
+    /** The size of every file. */
+    private final int _size;
+
+    /** A builder of files of SIZE bytes.
+     * @param size s */
+    SyntheticRepo(int size) {
+        _size = size;
+    }
+
+    /** Build the repository afresh with FILES files, COMMITS commits on
+     *  master and BRANCHES branches, after deleting the one built before.
+     * @param files f
+     * @param commits c
+     * @param branches b */
+    void build(int files, int commits, int branches) {
+        clear();
+        new Gitlet().init();
+        Utils.writeContents(Utils.join(_dir, ".gitlet", MARKER), "");
+        for (int i = 0; i < files; i += 1) {
+            write(fileName(i));
+            new Gitlet().add(fileName(i));
+        }
+        new Gitlet().commit("commit 0");
+        int every = Math.max(1, commits / (branches + 1));
+        int made = 0;
+        for (int i = 1; i < commits; i += 1) {
+            if (i % every == 0 && made < branches) {
+                made += 1;
+                new Gitlet().branch(branchName(made));
+            }
+            change(fileName(i % files), "commit " + i);
+        }
+        for (; made < branches; made += 1) {
+            new Gitlet().branch(branchName(made + 1));
+        }
+        for (int b = 1; b <= branches; b += 1) {
+            new Gitlet().checkoutBranch(branchName(b));
+            String name = branchName(b) + ".txt";
+            change(name, branchName(b) + " 1");
+            change(name, branchName(b) + " 2");
+            new Gitlet().checkoutBranch("master");
+        }
+    }
+
+    /** Give the file NAME new contents and commit it with MESSAGE.
+     * @param name n
+     * @param message m */
+    void change(String name, String message) {
+        write(name);
+        new Gitlet().add(name);
+        new Gitlet().commit(message);
+    }
+
+    /** Give the file NAME new random contents.
+     * @param name n */
+    void write(String name) {
+        byte[] contents = new byte[_size];
+        _random.nextBytes(contents);
+        Utils.writeContents(new File(_dir, name), contents);
+    }
+
+    /** @return the name of file I.
+     * @param i i */
+    static String fileName(int i) {
+        return "f" + i + ".txt";
+    }
+
+    /** @return the name of branch I, counting from 1.
+     * @param i i */
+    static String branchName(int i) {
+        return "b" + i;
+    }
+
+    /** Delete everything in the directory, refusing unless it is empty
+     *  or holds a repository built here. */
+    private void clear() {
+        String[] names = _dir.list();
+        if (names == null) {
+            throw Utils.error("No directory %s.", _dir);
+        }
+        if (names.length > 0
+            && !Utils.join(_dir, ".gitlet", MARKER).isFile()) {
+            throw Utils.error("%s is not a benchmark repository; run the "
+                              + "benchmarks in an empty directory.",
+                              _dir);
+        }
+        for (String name : names) {
+            Utils.deleteAll(new File(_dir, name));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/** A version of one file, as older versions recorded it in commits and
+ *  the staging directories: the path of the file and the ID of its
+ *  contents in the object store. Commits and the stage now hold blob
+ *  IDs directly, so blobs are only read, from those old records.
+ *
+ *  The first version kept the contents in the blob, decoded as UTF-8,
+ *  and serialized whole blobs into commits and the staging directories.
+ *  Reading such a blob has no side effects: its ID is computed from the
+ *  contents, and whoever reads it writes them with store() to the
+ *  object store of the repository it came from.
+ *  @author Mengzhu Sun
+ */
+public class Blob implements Serializable {
+
+    /** The ID of the first version of this class, whose blobs are still
+     *  read from commits and staging directories it wrote. */
+    private static final long serialVersionUID = 2090590227005332980L;
+
+    /** The path of the file from the top of the working directory. */
+    private String _name;
+
+    /** The SHA-1 of the contents. */
+    private String _blobID;
+
+    /** The contents, in blobs written by the first version only. */
+    private String _content;
+
+    /** A blob for contents that are already stored.
+     * @param name n
+     * @param blobID id */
+    Blob(String name, String blobID) {
+        _name = name;
+        _blobID = blobID;
+    }
+
+    /** @return the file path. */
+    String getName() {
+        return _name;
+    }
+
+    /** @return the blob ID. */
+    String getBlobID() {
+        if (_content != null) {
+            return Utils.sha1(_content.getBytes(StandardCharsets.UTF_8));
+        }
+        return _blobID;
+    }
+
+    /** Write the contents of a blob written by the first version to
+     *  STORE, so that its blob ID names an object there.
+     * @param store s */
+    void store(ObjectStore store) {
+        if (_content != null) {
+            _blobID = store.write(_content.getBytes(StandardCharsets.UTF_8));
+            _content = null;
+        }
+    }
+
+    /** @return the blob stored in FILE, in either format.
+     * @param file f */
+    static Blob read(File file) {
+        byte[] data = Utils.readContents(file);
+        if (Codec.isLegacy(data)) {
+            return Codec.readLegacy(data, Blob.class);
+        }
+        Codec.Reader in = new Codec.Reader(data, Codec.BLOB);
+        String name = in.string();
+        return new Blob(name, in.hash());
+    }
+}
@@ -0,0 +1,205 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import static gitlet.Utils.*;
+
+/** The compact binary encoding of the records kept in .gitlet.
+ *  Every record starts with the two magic bytes "GL", the format
+ *  version and a byte naming the kind of record. Numbers are varints,
+ *  seven bits per byte with the low bits first; strings are a varint
+ *  length followed by UTF-8 bytes; SHA-1 IDs are their 20 raw bytes.
+ *  Files written by earlier versions with Java serialization are still
+ *  read, so repositories can be migrated in place.
+ *  @author Mengzhu Sun
+ */
+class Codec {
+
+    /** The current format version. Version 2 commits refer to a root
+     *  Tree instead of listing every file. */
+    static final int VERSION = 2;
+
+    /** The kind of a Commit record. */
+    static final int COMMIT = 'C';
+    /** The kind of a Blob record. */
+    static final int BLOB = 'B';
+    /** The kind of a Remote record. */
+    static final int REMOTE = 'R';
+    /** The kind of a Tree record. */
+    static final int TREE = 'T';
+    /** The kind of the stat cache. */
+    static final int INDEX = 'I';
+    /** The kind of the staging area. */
+    static final int STAGE = 'S';
+
+    /** The first magic byte. */
+    private static final int MAGIC0 = 'G';
+    /** The second magic byte. */
+    private static final int MAGIC1 = 'L';
+    /** The first two bytes of a Java serialization stream. */
+    private static final int LEGACY0 = 0xac;
+    /** The second of them. */
+    private static final int LEGACY1 = 0xed;
+
+    /** @return true if DATA was written with Java serialization.
+     * @param data d */
+    static boolean isLegacy(byte[] data) {
+        return data.length > 1 && (data[0] & 0xff) == LEGACY0
+                && (data[1] & 0xff) == LEGACY1;
+    }
+
+    /** @return the object of type T that Java serialization wrote to DATA.
+     * @param data d
+     * @param expectedClass c */
+    static <T extends Serializable> T readLegacy(byte[] data,
+                                                 Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the non-negative V to OUT, seven bits at a time.
+     * @param out o
+     * @param v v */
+    static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7fL) != 0) {
+            out.write((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /** @return the varint in DATA at POS[0], advancing POS[0] past it.
+     * @param data d
+     * @param pos p */
+    static long readVarint(byte[] data, int[] pos) {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            v |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    /** Builds one record. */
+    static class Writer {
+
+        /** The bytes written so far. */
+        private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+
+        /** A record of the given KIND.
+         * @param kind k */
+        Writer(int kind) {
+            _out.write(MAGIC0);
+            _out.write(MAGIC1);
+            _out.write(VERSION);
+            _out.write(kind);
+        }
+
+        /** @return this after writing the byte B.
+         * @param b b */
+        Writer u8(int b) {
+            _out.write(b);
+            return this;
+        }
+
+        /** @return this after writing the non-negative V.
+         * @param v v */
+        Writer varint(long v) {
+            writeVarint(_out, v);
+            return this;
+        }
+
+        /** @return this after writing S.
+         * @param s s */
+        Writer string(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(_out, bytes.length);
+            _out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        /** @return this after writing the raw bytes of the SHA-1 ID.
+         * @param id id */
+        Writer hash(String id) {
+            _out.write(hexToBytes(id), 0, UID_BYTES);
+            return this;
+        }
+
+        /** @return the record. */
+        byte[] toByteArray() {
+            return _out.toByteArray();
+        }
+    }
+
+    /** Decodes one record in place, without copying it. */
+    static class Reader {
+
+        /** The record. */
+        private final byte[] _data;
+        /** The position of the next unread byte, boxed for readVarint. */
+        private final int[] _pos = {0};
+        /** The format version the record was written in. */
+        private final int _version;
+
+        /** A reader of DATA, which must be a record of the given KIND
+         *  in a version this code understands.
+         * @param data d
+         * @param kind k */
+        Reader(byte[] data, int kind) {
+            _data = data;
+            if (data.length < 4 || u8() != MAGIC0 || u8() != MAGIC1) {
+                throw error("Unrecognized gitlet record.");
+            }
+            _version = u8();
+            if (_version > VERSION) {
+                throw error("Record written by a newer gitlet.");
+            }
+            if (u8() != kind) {
+                throw error("Unexpected kind of gitlet record.");
+            }
+        }
+
+        /** @return the format version the record was written in. */
+        int version() {
+            return _version;
+        }
+
+        /** @return the next byte. */
+        int u8() {
+            return _data[_pos[0]++] & 0xff;
+        }
+
+        /** @return the next varint. */
+        long varint() {
+            return readVarint(_data, _pos);
+        }
+
+        /** @return the next string. */
+        String string() {
+            int len = (int) varint();
+            String s = new String(_data, _pos[0], len, StandardCharsets.UTF_8);
+            _pos[0] += len;
+            return s;
+        }
+
+        /** @return the next SHA-1 ID. */
+        String hash() {
+            String id = bytesToHex(_data, _pos[0], UID_BYTES);
+            _pos[0] += UID_BYTES;
+            return id;
+        }
+    }
+}
@@ -3,23 +3,35 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /** Represent a commit object. A commit is a snapshot of the
  * whole project in repository.
  * A commit is a combination of log messages and metadata,
  * a reference to a tree, and reference to parent commits.
+ * Commits written before trees existed list every file instead;
+ * their tree is built from that list when first needed.
  *  @author Mengzhu Sun
  */
 public class Commit implements Serializable {
 
-    /** wkdir. */
-    private File wkdir = new File(System.getProperty("user.dir"));
-    /** gitlet. */
-    private File gitlet = new File(wkdir, ".gitlet");
+    /** Pinned so that commits written with Java serialization by earlier
+     *  versions can still be read and migrated. */
+    private static final long serialVersionUID = -2598797188090229862L;
+
     /** commit. */
-    private File commit = new File(gitlet, "commit");
+    private static final File COMMIT_DIR =
+        Utils.join(System.getProperty("user.dir"), ".gitlet", "commit");
+
+    /** Flag of an encoded commit that has a first parent. */
+    private static final int HAS_PARENT1 = 1;
+    /** Flag of an encoded commit that has a second parent. */
+    private static final int HAS_PARENT2 = 2;
+    /** Flag of an encoded commit that has a branch. */
+    private static final int HAS_BRANCH = 4;
 
     /** The log message. */
     private String _logMsg;
@@ -27,8 +39,13 @@ public class Commit implements Serializable {
     /** The log time fot this commit. */
     private String _timeStamp;
 
-    /** A mapping of files names (key) to blob reference ID (values). */
-    private HashMap<String, Blob> _map;
+    /** A mapping of file paths (key) to blob reference ID (values),
+     *  filled in from the tree when first asked for. The contents
+     *  themselves are kept in the object store. */
+    private HashMap<String, String> _map;
+
+    /** The ID of the root Tree. */
+    private String _tree;
 
     /** A reference to parent commit. The default parent. */
     private String _parent1;
@@ -42,6 +59,10 @@ public class Commit implements Serializable {
     /** The branch name if this commit. */
     private String _branch;
 
+    /** The Blobs of a commit written by the first version, whose contents
+     *  store() has yet to write to an object store, or null. */
+    private transient ArrayList<Blob> _legacy;
+
     /** The default constructor when we first init the repository. */
     Commit() {
         _logMsg = "initial commit";
@@ -49,6 +70,7 @@ public class Commit implements Serializable {
         _parent1 = null;
         _parent2 = null;
         _map = new HashMap<>();
+        _tree = new Tree().write(ObjectStore.local());
         _branch = "master";
         _commitID = setCommitID();
         serializeCommit();
@@ -58,20 +80,51 @@ public class Commit implements Serializable {
      * @param parent1 p2
      * @param parent2 p2
      * @param branch b
-     * @param blobs b */
+     * @param tree the ID of the root tree */
     Commit(String msg, String parent1,
            String parent2, String branch,
-           ArrayList<Blob> blobs) {
+           String tree) {
         _logMsg = msg;
         _parent1 = parent1;
         _parent2 = parent2;
         _timeStamp = setTimeStamp();
-        _map = setMap(blobs);
+        _tree = tree;
         _branch = branch;
         _commitID = setCommitID();
         serializeCommit();
     }
 
+    /** Decode a commit from IN. The file map of a version 1 record is
+     *  only read if WITHMAP, since most history walks only need the
+     *  header; later versions hold just the ID of the root tree.
+     * @param in i
+     * @param withMap w */
+    private Commit(Codec.Reader in, boolean withMap) {
+        _commitID = in.hash();
+        int flags = in.u8();
+        if ((flags & HAS_PARENT1) != 0) {
+            _parent1 = in.hash();
+        }
+        if ((flags & HAS_PARENT2) != 0) {
+            _parent2 = in.hash();
+        }
+        _logMsg = in.string();
+        _timeStamp = in.string();
+        if ((flags & HAS_BRANCH) != 0) {
+            _branch = in.string();
+        }
+        if (in.version() >= 2) {
+            _tree = in.hash();
+        } else if (withMap) {
+            int n = (int) in.varint();
+            _map = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i += 1) {
+                String name = in.string();
+                _map.put(name, in.hash());
+            }
+        }
+    }
+
     /** Set (generate) the commit ID using the SHA-1 hashing.
      * @return commitID **/
     String setCommitID() {
@@ -100,22 +153,6 @@ public class Commit implements Serializable {
         return curr.format(pattern);
     }
 
-    /** This method should take care of the addition stage
-     * and the removal stage. First inherit the HashMap from the parent commit,
-     * compare the hashMap with the stage blobs.
-     * After adding and removing proper blobs, generate a new HashMap.
-     * @return hashMap
-     * @param blobs b */
-    HashMap<String, Blob> setMap(ArrayList<Blob> blobs) {
-        _map = new HashMap<>();
-        if (blobs.size() != 0) {
-            for (Blob b : blobs) {
-                _map.put(b.getName(), b);
-            }
-        }
-        return _map;
-    }
-
     /** Set the branch.
      * @param branch b */
     void setBranch(String branch) {
@@ -132,11 +169,38 @@ public class Commit implements Serializable {
         return _timeStamp;
     }
 
-    /** @return the hash map of this commit.  */
-    HashMap<String, Blob> getMap() {
+    /** @return the time stamp in seconds since the epoch, or 0 if it
+     * cannot be parsed. */
+    long getTime() {
+        DateTimeFormatter pattern =
+                DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z");
+        try {
+            return ZonedDateTime.parse(_timeStamp, pattern).toEpochSecond();
+        } catch (DateTimeParseException excp) {
+            return 0;
+        }
+    }
+
+    /** @return the hash map of this commit, from file paths to blob IDs.
+     * The whole tree is read, so prefer getTree() where subtrees can be
+     * compared by ID instead. */
+    HashMap<String, String> getMap() {
+        if (_map == null) {
+            _map = new HashMap<>();
+            Tree.flatten(ObjectStore.local(), _tree, "", _map);
+        }
         return _map;
     }
 
+    /** @return the ID of the root tree, storing it first if this commit
+     * was written before trees existed. */
+    String getTree() {
+        if (_tree == null) {
+            _tree = Tree.update(ObjectStore.local(), null, _map);
+        }
+        return _tree;
+    }
+
     /** @return parent 1 commit ID. */
     String getParent1ID() {
         return _parent1;
@@ -159,7 +223,95 @@ public class Commit implements Serializable {
 
     /** Serialize this commit for the history record. */
     void serializeCommit() {
-        File firstCmt = new File(commit, getCommitID());
-        Utils.writeContents(firstCmt, Utils.serialize(this));
+        File firstCmt = new FanOutDir(COMMIT_DIR).create(getCommitID());
+        Utils.writeContents(firstCmt, encode());
+    }
+
+    /** @return this commit in the binary format of Codec. */
+    byte[] encode() {
+        Codec.Writer out = new Codec.Writer(Codec.COMMIT);
+        int flags = 0;
+        if (_parent1 != null) {
+            flags |= HAS_PARENT1;
+        }
+        if (_parent2 != null) {
+            flags |= HAS_PARENT2;
+        }
+        if (_branch != null) {
+            flags |= HAS_BRANCH;
+        }
+        out.hash(_commitID).u8(flags);
+        if (_parent1 != null) {
+            out.hash(_parent1);
+        }
+        if (_parent2 != null) {
+            out.hash(_parent2);
+        }
+        out.string(_logMsg).string(_timeStamp);
+        if (_branch != null) {
+            out.string(_branch);
+        }
+        out.hash(getTree());
+        return out.toByteArray();
+    }
+
+    /** @return the commit stored in FILE, in either the current or the
+     * old Java serialization format.
+     * @param file f */
+    static Commit read(File file) {
+        return decode(Utils.readContents(file), true);
+    }
+
+    /** @return the commit stored in FILE without its file map, which is
+     * all that log, find and history walks need.
+     * @param file f */
+    static Commit readHeader(File file) {
+        return decode(Utils.readContents(file), false);
+    }
+
+    /** @return the commit encoded in DATA, reading the file map if WITHMAP.
+     * @param data d
+     * @param withMap w */
+    static Commit decode(byte[] data, boolean withMap) {
+        if (Codec.isLegacy(data)) {
+            Commit c = Codec.readLegacy(data, Commit.class);
+            c.resolveBlobs();
+            return c;
+        }
+        return new Commit(new Codec.Reader(data, Codec.COMMIT), withMap);
+    }
+
+    /** Replace the Blobs that the first version serialized as the values
+     *  of the file map with their blob IDs, keeping them until store()
+     *  writes their contents. */
+    private void resolveBlobs() {
+        HashMap<String, String> map = new HashMap<>();
+        _legacy = new ArrayList<>();
+        for (Map.Entry<String, ?> e
+                 : ((HashMap<String, ?>) _map).entrySet()) {
+            Object v = e.getValue();
+            if (v instanceof Blob) {
+                _legacy.add((Blob) v);
+                map.put(e.getKey(), ((Blob) v).getBlobID());
+            } else {
+                map.put(e.getKey(), (String) v);
+            }
+        }
+        _map = map;
+    }
+
+    /** Write the contents of the files of a commit written by the first
+     *  version, which kept them in the commit, to STORE, the object store
+     *  of the repository it was read from. Other commits are left alone.
+     * @param store s
+     * @return this commit */
+    Commit store(ObjectStore store) {
+        if (_legacy != null) {
+            for (Blob b : _legacy) {
+                b.store(store);
+            }
+            _legacy = null;
+        }
+        return this;
     }
 }
@@ -0,0 +1,536 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static gitlet.Utils.*;
+
+/** The commit graph kept in .gitlet/commit-graph: one fixed-width row
+ *  per commit holding its raw ID, the positions of its parents, its
+ *  generation number and its time stamp, so that history can be walked
+ *  without opening a single commit file.
+ *
+ *  The file is a header (magic, version, row count) followed by the rows
+ *  in the order the commits were made, so a parent always comes before
+ *  its children and a new commit is one appended row. The file is
+ *  memory-mapped when read.
+ *
+ *  Commits are found by ID through .gitlet/commit-graph.idx: the raw IDs
+ *  of the rows, sorted, each with its position, after a fan-out table
+ *  counting the IDs up to each first byte, as in a pack index. It is
+ *  also memory-mapped, so a full or abbreviated ID is resolved by binary
+ *  search without reading the rest. Rows appended since the index was
+ *  written are searched one by one, and the index is rewritten once
+ *  there are REINDEX of them.
+ *  @author Mengzhu Sun
+ */
+class CommitGraph {
+
+    /** Magic number of the file. */
+    private static final int MAGIC = 0x47475246;
+    /** Magic number of the ID index. */
+    private static final int INDEX_MAGIC = 0x47474958;
+    /** Format version. */
+    private static final int VERSION = 1;
+    /** Length of the header. */
+    private static final int HEADER = 12;
+    /** Length of a row: ID, two parents, generation and time. */
+    private static final int ROW = UID_BYTES + 4 + 4 + 4 + 8;
+    /** Offset of the first parent in a row. */
+    private static final int PARENT1 = UID_BYTES;
+    /** Offset of the second parent in a row. */
+    private static final int PARENT2 = PARENT1 + 4;
+    /** Offset of the generation number in a row. */
+    private static final int GENERATION = PARENT2 + 4;
+    /** Offset of the time stamp in a row. */
+    private static final int TIME = GENERATION + 4;
+    /** Number of entries in the fan-out table of the ID index. */
+    private static final int FANOUT = 256;
+    /** Length of the header and fan-out table of the ID index. */
+    private static final int INDEX_HEADER = HEADER + 4 * FANOUT;
+    /** Length of a row of the ID index: ID and position. */
+    private static final int INDEX_ROW = UID_BYTES + 4;
+    /** The number of rows left out of the ID index before it is
+     *  rewritten. */
+    private static final int REINDEX = 256;
+
+    /** The position of a missing commit. */
+    static final int NONE = -1;
+
+    /** Mark of a commit reachable from the first tip of a merge-base walk. */
+    private static final int FROM1 = 1;
+    /** Mark of a commit reachable from the second tip. */
+    private static final int FROM2 = 2;
+    /** Mark of a commit whose ancestors cannot be best common ancestors. */
+    private static final int STALE = 4;
+
+    /** The graph file. */
+    private final File _file;
+    /** The ID index file. */
+    private final File _indexFile;
+    /** The commit files, used to rebuild the graph. */
+    private final FanOutDir _commits;
+    /** The mapped file, or null until first used. */
+    private ByteBuffer _rows;
+    /** The number of rows. */
+    private int _count;
+    /** The mapped ID index, or null until first used. */
+    private ByteBuffer _index;
+    /** The number of rows covered by the ID index. */
+    private int _indexed;
+
+    /** The graph of the repository whose .gitlet directory is GITLET.
+     * @param gitlet g */
+    CommitGraph(File gitlet) {
+        _file = new File(gitlet, "commit-graph");
+        _indexFile = new File(gitlet, "commit-graph.idx");
+        _commits = new FanOutDir(new File(gitlet, "commit"));
+    }
+
+    /** @return the number of commits in the graph. */
+    int size() {
+        load();
+        return _count;
+    }
+
+    /** @return the position of the commit ID, or NONE if it is not in
+     * the graph.
+     * @param id id */
+    int position(String id) {
+        List<Integer> found = find(id, 1);
+        return found.isEmpty() ? NONE : found.get(0);
+    }
+
+    /** @return the full ID of the one commit whose ID starts with PREFIX.
+     * It is an error if there is none or more than one.
+     * @param prefix p */
+    String resolve(String prefix) {
+        List<Integer> found = find(prefix, 2);
+        if (found.isEmpty()) {
+            throw error("No commit with that id exists.");
+        }
+        if (found.size() > 1) {
+            throw error("Ambiguous commit id %s.", prefix);
+        }
+        return id(found.get(0));
+    }
+
+    /** @return the positions of up to LIMIT commits whose IDs start with
+     * the hexadecimal PREFIX.
+     * @param prefix p
+     * @param limit l */
+    private List<Integer> find(String prefix, int limit) {
+        load();
+        List<Integer> result = new ArrayList<>();
+        if (prefix.isEmpty() || prefix.length() > UID_LENGTH
+            || !prefix.matches("[0-9a-fA-F]+")) {
+            return result;
+        }
+        int lo = 0;
+        int hi = _indexed;
+        if (prefix.length() >= 2) {
+            int first = Integer.parseInt(prefix.substring(0, 2), 16);
+            lo = first == 0 ? 0 : _index.getInt(HEADER + 4 * (first - 1));
+            hi = _index.getInt(HEADER + 4 * first);
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(_index, indexRow(mid), prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < _indexed && result.size() < limit
+                 && compare(_index, indexRow(i), prefix) == 0; i += 1) {
+            result.add(_index.getInt(indexRow(i) + UID_BYTES));
+        }
+        for (int pos = _indexed; pos < _count && result.size() < limit;
+             pos += 1) {
+            if (compare(_rows, row(pos), prefix) == 0) {
+                result.add(pos);
+            }
+        }
+        return result;
+    }
+
+    /** @return the sign of the comparison of the raw ID at OFFSET in BUF
+     * with the hexadecimal PREFIX, counting only the first digits of the
+     * ID, so that 0 means that the ID starts with PREFIX.
+     * @param buf b
+     * @param offset o
+     * @param prefix p */
+    private static int compare(ByteBuffer buf, int offset, String prefix) {
+        for (int i = 0; i < prefix.length(); i += 1) {
+            int b = buf.get(offset + i / 2) & 0xff;
+            int digit = i % 2 == 0 ? b >>> 4 : b & 0xf;
+            int cmp = digit - Character.digit(prefix.charAt(i), 16);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** @return the position of the commit ID, rebuilding the graph if
+     * the commit exists but was made by a version that did not keep one.
+     * @param id id */
+    int require(String id) {
+        int pos = position(id);
+        if (pos == NONE && _commits.contains(id)) {
+            rebuild();
+            pos = position(id);
+        }
+        if (pos == NONE) {
+            throw error("No commit with that id exists.");
+        }
+        return pos;
+    }
+
+    /** @return the ID of the commit at POS.
+     * @param pos p */
+    String id(int pos) {
+        load();
+        byte[] raw = new byte[UID_BYTES];
+        _rows.get(row(pos), raw, 0, UID_BYTES);
+        return bytesToHex(raw, 0, UID_BYTES);
+    }
+
+    /** @return the position of the first parent of POS, or NONE.
+     * @param pos p */
+    int parent1(int pos) {
+        load();
+        return _rows.getInt(row(pos) + PARENT1);
+    }
+
+    /** @return the position of the second parent of POS, or NONE.
+     * @param pos p */
+    int parent2(int pos) {
+        load();
+        return _rows.getInt(row(pos) + PARENT2);
+    }
+
+    /** @return the generation number of POS: 1 for a root, otherwise
+     * one more than the largest generation of its parents.
+     * @param pos p */
+    int generation(int pos) {
+        load();
+        return _rows.getInt(row(pos) + GENERATION);
+    }
+
+    /** @return the time stamp of POS in seconds since the epoch.
+     * @param pos p */
+    long time(int pos) {
+        load();
+        return _rows.getLong(row(pos) + TIME);
+    }
+
+    /** @return true if the commit at ANCESTOR can be reached from the
+     * commit at POS by following parents.
+     * @param pos p
+     * @param ancestor a */
+    boolean reaches(int pos, int ancestor) {
+        int floor = generation(ancestor);
+        HashSet<Integer> seen = new HashSet<>();
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(pos);
+        while (!todo.isEmpty()) {
+            int p = todo.pop();
+            if (p == ancestor) {
+                return true;
+            }
+            if (p == NONE || generation(p) <= floor || !seen.add(p)) {
+                continue;
+            }
+            todo.push(parent1(p));
+            todo.push(parent2(p));
+        }
+        return false;
+    }
+
+    /** @return the best common ancestor of the commits at A and B, or
+     * NONE if they share no history. When there are several, as after
+     * criss-cross merges, the one with the highest generation (and then
+     * the latest) is chosen.
+     * @param a a
+     * @param b b */
+    int mergeBase(int a, int b) {
+        int best = NONE;
+        for (int pos : mergeBases(a, b)) {
+            if (best == NONE || newer().compare(pos, best) < 0) {
+                best = pos;
+            }
+        }
+        return best;
+    }
+
+    /** @return the best common ancestors of the commits at A and B: the
+     * common ancestors that are not ancestors of another common ancestor.
+     * Both histories are walked together, newest generation first, and
+     * the walk stops as soon as every commit left to visit is an ancestor
+     * of a common ancestor already found, so only the commits made since
+     * the histories diverged are visited.
+     * @param a a
+     * @param b b */
+    List<Integer> mergeBases(int a, int b) {
+        List<Integer> result = new ArrayList<>();
+        if (a == b) {
+            result.add(a);
+            return result;
+        }
+        HashMap<Integer, Integer> marks = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>(newer());
+        marks.put(a, FROM1);
+        marks.put(b, FROM2);
+        queue.add(a);
+        queue.add(b);
+        while (hasUnstale(queue, marks)) {
+            int pos = queue.poll();
+            int flags = marks.get(pos) & (FROM1 | FROM2 | STALE);
+            if (flags == (FROM1 | FROM2)) {
+                if (!result.contains(pos)) {
+                    result.add(pos);
+                }
+                flags |= STALE;
+            }
+            for (int p : new int[] {parent1(pos), parent2(pos)}) {
+                if (p == NONE) {
+                    continue;
+                }
+                int old = marks.getOrDefault(p, 0);
+                if ((old & flags) != flags) {
+                    marks.put(p, old | flags);
+                    queue.add(p);
+                }
+            }
+        }
+        return removeRedundant(result);
+    }
+
+    /** @return BASES without those that are ancestors of another.
+     * @param bases b */
+    private List<Integer> removeRedundant(List<Integer> bases) {
+        List<Integer> result = new ArrayList<>();
+        for (int pos : bases) {
+            boolean redundant = false;
+            for (int other : bases) {
+                if (other != pos && reaches(other, pos)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(pos);
+            }
+        }
+        return result;
+    }
+
+    /** @return true if QUEUE holds a commit not marked STALE in MARKS.
+     * @param queue q
+     * @param marks m */
+    private static boolean hasUnstale(PriorityQueue<Integer> queue,
+                                      HashMap<Integer, Integer> marks) {
+        for (int pos : queue) {
+            if ((marks.get(pos) & STALE) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the order putting higher generations first, and then
+     * later time stamps. */
+    private Comparator<Integer> newer() {
+        return (x, y) -> {
+            int cmp = Integer.compare(generation(y), generation(x));
+            return cmp != 0 ? cmp : Long.compare(time(y), time(x));
+        };
+    }
+
+    /** Append the commit C, whose parents must already be in the graph.
+     * @param c c */
+    void add(Commit c) {
+        if (position(c.getCommitID()) != NONE) {
+            return;
+        }
+        int p1 = NONE;
+        int p2 = NONE;
+        int gen = 1;
+        if (c.getParent1ID() != null) {
+            p1 = require(c.getParent1ID());
+            gen = Math.max(gen, generation(p1) + 1);
+        }
+        if (c.getParent2ID() != null) {
+            p2 = require(c.getParent2ID());
+            gen = Math.max(gen, generation(p2) + 1);
+        }
+        ByteBuffer row = ByteBuffer.allocate(ROW);
+        row.put(hexToBytes(c.getCommitID()));
+        row.putInt(p1).putInt(p2).putInt(gen).putLong(c.getTime());
+        try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+            out.seek(HEADER + (long) ROW * _count);
+            out.write(row.array());
+            out.seek(8);
+            out.writeInt(_count + 1);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _rows = null;
+        if (_count + 1 - _indexed >= REINDEX) {
+            load();
+            writeIndex();
+        }
+    }
+
+    /** Write the graph afresh from the commit files, parents first. */
+    void rebuild() {
+        HashMap<String, Commit> commits = new HashMap<>();
+        for (String id : _commits.ids()) {
+            commits.put(id, Commit.readHeader(_commits.file(id)));
+        }
+        List<Commit> order = new ArrayList<>();
+        HashMap<String, Integer> positions = new HashMap<>();
+        for (String start : commits.keySet()) {
+            ArrayDeque<String> todo = new ArrayDeque<>();
+            todo.push(start);
+            while (!todo.isEmpty()) {
+                String id = todo.peek();
+                Commit c = commits.get(id);
+                if (positions.containsKey(id) || c == null) {
+                    todo.pop();
+                    continue;
+                }
+                boolean ready = true;
+                for (String p : new String[] {c.getParent1ID(),
+                                              c.getParent2ID()}) {
+                    if (p != null && commits.containsKey(p)
+                        && !positions.containsKey(p)) {
+                        todo.push(p);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    todo.pop();
+                    positions.put(id, order.size());
+                    order.add(c);
+                }
+            }
+        }
+        int[] gens = new int[order.size()];
+        ByteBuffer out = ByteBuffer.allocate(HEADER + ROW * order.size());
+        out.putInt(MAGIC).putInt(VERSION).putInt(order.size());
+        for (int i = 0; i < order.size(); i += 1) {
+            Commit c = order.get(i);
+            int p1 = positionIn(positions, c.getParent1ID());
+            int p2 = positionIn(positions, c.getParent2ID());
+            gens[i] = 1 + Math.max(p1 == NONE ? 0 : gens[p1],
+                                   p2 == NONE ? 0 : gens[p2]);
+            out.put(hexToBytes(c.getCommitID()));
+            out.putInt(p1).putInt(p2).putInt(gens[i]).putLong(c.getTime());
+        }
+        writeContents(_file, out.array());
+        _indexFile.delete();
+        _rows = null;
+        _index = null;
+    }
+
+    /** Write the ID index afresh from the mapped rows. */
+    private void writeIndex() {
+        Integer[] order = new Integer[_count];
+        byte[][] ids = new byte[_count][UID_BYTES];
+        for (int i = 0; i < _count; i += 1) {
+            order[i] = i;
+            _rows.get(row(i), ids[i], 0, UID_BYTES);
+        }
+        Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(ids[x], ids[y]));
+        ByteBuffer out = ByteBuffer.allocate(INDEX_HEADER
+                                             + INDEX_ROW * _count);
+        out.putInt(INDEX_MAGIC).putInt(VERSION).putInt(_count);
+        int[] fanout = new int[FANOUT];
+        for (byte[] id : ids) {
+            fanout[id[0] & 0xff] += 1;
+        }
+        for (int i = 0, total = 0; i < FANOUT; i += 1) {
+            total += fanout[i];
+            out.putInt(total);
+        }
+        for (int pos : order) {
+            out.put(ids[pos]).putInt(pos);
+        }
+        writeAtomically(_indexFile, out.array());
+        _index = out;
+        _indexed = _count;
+    }
+
+    /** @return the position of ID in POSITIONS, or NONE.
+     * @param positions p
+     * @param id id */
+    private static int positionIn(HashMap<String, Integer> positions,
+                                  String id) {
+        Integer pos = id == null ? null : positions.get(id);
+        return pos == null ? NONE : pos;
+    }
+
+    /** @return where the row of POS starts.
+     * @param pos p */
+    private static int row(int pos) {
+        return HEADER + ROW * pos;
+    }
+
+    /** @return where the row of the ID index numbered I starts.
+     * @param i i */
+    private static int indexRow(int i) {
+        return INDEX_HEADER + INDEX_ROW * i;
+    }
+
+    /** Map the graph file and its ID index, writing them first if they
+     *  are missing or the index covers rows the graph does not have. */
+    private void load() {
+        if (_rows != null) {
+            return;
+        }
+        if (!_file.isFile()) {
+            rebuild();
+        }
+        _rows = map(_file);
+        if (_rows.getInt(0) != MAGIC || _rows.getInt(4) != VERSION) {
+            throw error("Unrecognized commit graph.");
+        }
+        _count = _rows.getInt(8);
+        if (_index == null && _indexFile.isFile()) {
+            _index = map(_indexFile);
+            if (_index.getInt(0) != INDEX_MAGIC
+                || _index.getInt(4) != VERSION) {
+                throw error("Unrecognized commit graph index.");
+            }
+            _indexed = _index.getInt(8);
+        }
+        if (_index == null || _indexed > _count) {
+            writeIndex();
+        }
+    }
+
+    /** @return the contents of F, mapped read-only.
+     * @param f f */
+    private static ByteBuffer map(File f) {
+        try (FileChannel in = FileChannel.open(f.toPath(),
+                                               StandardOpenOption.READ)) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A long-running gitlet that keeps one JVM warm for a repository, so
+ *  that scripts running many commands do not pay for starting a JVM,
+ *  loading classes and compiling hot code on every one.
+ *
+ *      java gitlet.Daemon --daemon     serve the repository in the
+ *                                      current directory until stopped
+ *      java gitlet.Daemon --stop       stop it
+ *      java gitlet.Daemon ARGS...      run the gitlet command ARGS,
+ *                                      through the daemon if one is up
+ *
+ *  The daemon listens on the Unix-domain socket .gitlet/daemon.sock.
+ *  A request is the arguments of one command, each followed by a NUL
+ *  byte, after which the client shuts down its side of the connection;
+ *  the response is everything the command prints, until the daemon
+ *  closes the connection. So any client will do, for instance
+ *
+ *      printf 'log\0-n\0002\0' | nc -UN .gitlet/daemon.sock
+ *
+ *  An empty request runs nothing and is answered with nothing, which
+ *  tells a client whether the daemon is up. gitlet.sh is such a client:
+ *  it sends its arguments through socat or nc when a daemon is up and
+ *  starts a JVM only when none is, so that scripts do not start a JVM
+ *  for every command just to forward it.
+ *
+ *  Commands run one at a time, each on a fresh Gitlet, so refs, staging
+ *  and the stat cache are read anew and may be changed by other gitlet
+ *  processes in between, while the ObjectCache of immutable records
+ *  carries over. With -Dgitlet.verbose=true the daemon reports how well
+ *  that cache does on its standard error after each command.
+ *  Utils.exit() ends just the command.
+ *  @author Mengzhu Sun
+ */
+public class Daemon {
+
+    /** Thrown by Utils.exit() to end a command the daemon is running.
+     *  An Error, so that no catch of exceptions in a command stops it. */
+    static final class Exit extends Error {
+        /** Serialization ID. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** The request that stops the daemon. */
+    private static final String STOP = "--stop";
+
+    /** True while this JVM is serving as a daemon. */
+    private static volatile boolean _serving;
+
+    /** @return true if this JVM is serving as a daemon. */
+    static boolean serving() {
+        return _serving;
+    }
+
+    /** Serve, stop the daemon or run one command, as ARGS says.
+     * @param args a */
+    public static void main(String... args) throws IOException {
+        File socket = socket();
+        if (args.length == 1 && args[0].equals("--daemon")) {
+            serve(socket);
+        } else if (args.length == 0 || !forward(socket, args)) {
+            if (args.length == 1 && args[0].equals(STOP)) {
+                System.out.println("No gitlet daemon is running.");
+            } else {
+                run(args);
+            }
+        }
+    }
+
+    /** @return the socket of the repository in the working directory. */
+    static File socket() {
+        return Utils.join(System.getProperty("user.dir"), ".gitlet",
+                          "daemon.sock");
+    }
+
+    /** Accept commands on SOCKET until asked to stop.
+     * @param socket s */
+    static void serve(File socket) throws IOException {
+        if (!socket.getParentFile().isDirectory()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        Files.deleteIfExists(socket.toPath());
+        UnixDomainSocketAddress address =
+            UnixDomainSocketAddress.of(socket.toPath());
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        _serving = true;
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            while (true) {
+                try (SocketChannel client = server.accept()) {
+                    String[] args = readRequest(client);
+                    if (args.length == 0) {
+                        continue;
+                    } else if (args.length == 1 && args[0].equals(STOP)) {
+                        break;
+                    }
+                    PrintStream out = new PrintStream(
+                        Channels.newOutputStream(client), false,
+                        StandardCharsets.UTF_8);
+                    System.setOut(out);
+                    System.setErr(out);
+                    try {
+                        run(args);
+                    } catch (Exit excp) {
+                        /* The command is over. */
+                    } catch (RuntimeException excp) {
+                        out.println(excp.getMessage());
+                    } finally {
+                        out.flush();
+                        System.setOut(stdout);
+                        System.setErr(stderr);
+                    }
+                    if (Boolean.getBoolean("gitlet.verbose")) {
+                        ObjectCache cache = ObjectCache.SHARED;
+                        stderr.printf("cache: %d hits, %d misses, %d bytes%n",
+                                      cache.hits(), cache.misses(),
+                                      cache.weight());
+                    }
+                } catch (IOException excp) {
+                    stderr.println(excp.getMessage());
+                }
+            }
+        } finally {
+            _serving = false;
+            Files.deleteIfExists(socket.toPath());
+        }
+    }
+
+    /** Send ARGS to the daemon at SOCKET and copy its response to
+     * standard output.
+     * @param socket s
+     * @param args a
+     * @return false if there is no daemon to send them to */
+    static boolean forward(File socket, String[] args) throws IOException {
+        if (!socket.exists()) {
+            return false;
+        }
+        SocketChannel server;
+        try {
+            server = SocketChannel.open(
+                UnixDomainSocketAddress.of(socket.toPath()));
+        } catch (IOException excp) {
+            return false;
+        }
+        try (SocketChannel s = server) {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            for (String arg : args) {
+                request.writeBytes(arg.getBytes(StandardCharsets.UTF_8));
+                request.write(0);
+            }
+            OutputStream out = Channels.newOutputStream(s);
+            out.write(request.toByteArray());
+            s.shutdownOutput();
+            InputStream in = Channels.newInputStream(s);
+            byte[] buf = new byte[Utils.BUFFER_SIZE];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                System.out.write(buf, 0, n);
+            }
+            System.out.flush();
+        }
+        return true;
+    }
+
+    /** @return the arguments sent by CLIENT.
+     * @param client c */
+    private static String[] readRequest(SocketChannel client)
+        throws IOException {
+        byte[] data = Channels.newInputStream(client).readAllBytes();
+        List<String> args = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < data.length; i += 1) {
+            if (data[i] == 0) {
+                args.add(new String(data, start, i - start,
+                                    StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /** Run the gitlet command ARGS in this JVM.
+     * @param args a */
+    static void run(String... args) {
+        if (args.length == 0) {
+            System.out.println("Please enter a command.");
+            return;
+        }
+        String cmd = args[0];
+        if (!cmd.equals("init")
+            && !new File(System.getProperty("user.dir"), ".gitlet")
+                .isDirectory()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        Gitlet g = new Gitlet();
+        switch (cmd) {
+        case "init":
+            g.init();
+            break;
+        case "add":
+            g.add(operands(args, 1));
+            break;
+        case "commit":
+            g.commit(operand(args, 1));
+            break;
+        case "rm":
+            g.rm(operands(args, 1));
+            break;
+        case "log":
+        case "global-log":
+            runLog(g, args);
+            break;
+        case "find":
+            g.find(operand(args, 1));
+            break;
+        case "find-words":
+            g.findWords(operand(args, 1));
+            break;
+        case "status":
+            g.status();
+            break;
+        case "checkout":
+            runCheckout(g, args);
+            break;
+        case "branch":
+            g.branch(operand(args, 1));
+            break;
+        case "rm-branch":
+            g.rmBranch(operand(args, 1));
+            break;
+        case "reset":
+            runReset(g, operand(args, 1));
+            break;
+        case "merge":
+            g.merge(operand(args, 1));
+            break;
+        case "add-remote":
+            g.addRemote(operand(args, 1), operand(args, 2));
+            break;
+        case "rm-remote":
+            g.rmRemote(operand(args, 1));
+            break;
+        case "push":
+            g.push(operand(args, 1), operand(args, 2));
+            break;
+        case "fetch":
+            g.fetch(operand(args, 1), operand(args, 2));
+            break;
+        case "pull":
+            g.pull(operand(args, 1), operand(args, 2));
+            break;
+        case "gc":
+            g.gc();
+            break;
+        case "migrate":
+            g.migrate();
+            break;
+        default:
+            System.out.println("No command with that name exists.");
+        }
+    }
+
+    /** Run log or global-log with the options in ARGS on G.
+     * @param g g
+     * @param args a */
+    private static void runLog(Gitlet g, String[] args) {
+        int limit = -1;
+        long since = Long.MIN_VALUE;
+        for (int i = 1; i < args.length; i += 2) {
+            if (args[i].equals("-n")) {
+                try {
+                    limit = Integer.parseInt(operand(args, i + 1));
+                } catch (NumberFormatException excp) {
+                    incorrectOperands();
+                }
+            } else if (args[i].equals("--since")) {
+                since = Gitlet.parseSince(operand(args, i + 1));
+            } else {
+                incorrectOperands();
+            }
+        }
+        if (args[0].equals("log")) {
+            g.log(limit, since);
+        } else {
+            g.globalLog(limit, since);
+        }
+    }
+
+    /** Run one of the three forms of checkout in ARGS on G.
+     * @param g g
+     * @param args a */
+    private static void runCheckout(Gitlet g, String[] args) {
+        if (args.length == 3 && args[1].equals("--")) {
+            g.checkoutFileName(args[2]);
+        } else if (args.length == 4 && args[2].equals("--")) {
+            if (args[1].length() < Utils.UID_LENGTH) {
+                g.checkoutShortID(args[1], args[3]);
+            } else {
+                g.checkoutID(args[1], args[3]);
+            }
+        } else if (args.length == 2) {
+            g.checkoutBranch(args[1]);
+        } else {
+            incorrectOperands();
+        }
+    }
+
+    /** Reset G to the commit ID, which may be abbreviated.
+     * @param g g
+     * @param id id */
+    private static void runReset(Gitlet g, String id) {
+        if (id.length() < Utils.UID_LENGTH) {
+            g.resetShortID(id);
+        } else {
+            g.reset(id);
+        }
+    }
+
+    /** @return operand I of ARGS, ending the command if it is missing.
+     * @param args a
+     * @param i i */
+    private static String operand(String[] args, int i) {
+        if (i >= args.length) {
+            incorrectOperands();
+        }
+        return args[i];
+    }
+
+    /** @return the operands of ARGS from I on, ending the command if
+     * there are none.
+     * @param args a
+     * @param i i */
+    private static String[] operands(String[] args, int i) {
+        operand(args, i);
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
+    /** Report incorrect operands and end the command. */
+    private static void incorrectOperands() {
+        System.out.println("Incorrect operands.");
+        Utils.exit();
+    }
+}
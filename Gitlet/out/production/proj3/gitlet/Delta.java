@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Binary deltas between two versions of a file. A delta is a list of
+ *  instructions that rebuild the target from the base: either copy a
+ *  run of bytes out of the base or insert literal bytes.
+ *  The format is the base and target lengths as varints followed by
+ *  the instructions. A copy is a byte with the top bit set followed by
+ *  the offset and length as varints; an insert is a byte holding its
+ *  length (1 to 127) followed by that many literal bytes.
+ *  @author Mengzhu Sun
+ */
+class Delta {
+
+    /** The size of the blocks of the base that are indexed. */
+    private static final int BLOCK = 16;
+
+    /** The longest literal run one insert instruction can hold. */
+    private static final int MAX_INSERT = 0x7f;
+
+    /** The marker bit of a copy instruction. */
+    private static final int COPY = 0x80;
+
+    /** @return the delta that turns BASE into TARGET.
+     * @param base b
+     * @param target t */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            index.putIfAbsent(hash(base, i), i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Codec.writeVarint(out, base.length);
+        Codec.writeVarint(out, target.length);
+        int pending = 0;
+        int i = 0;
+        while (i < target.length) {
+            Integer at = null;
+            if (i + BLOCK <= target.length) {
+                at = index.get(hash(target, i));
+            }
+            if (at == null || !same(base, at, target, i, BLOCK)) {
+                i += 1;
+                continue;
+            }
+            int start = at;
+            int len = BLOCK;
+            while (start > 0 && i > pending
+                   && base[start - 1] == target[i - 1]) {
+                start -= 1;
+                i -= 1;
+                len += 1;
+            }
+            while (start + len < base.length && i + len < target.length
+                   && base[start + len] == target[i + len]) {
+                len += 1;
+            }
+            insert(out, target, pending, i);
+            out.write(COPY);
+            Codec.writeVarint(out, start);
+            Codec.writeVarint(out, len);
+            i += len;
+            pending = i;
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** @return the target rebuilt by applying DELTA to BASE.
+     * @param base b
+     * @param delta d */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int baseLen = (int) Codec.readVarint(delta, pos);
+        if (baseLen != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] target = new byte[(int) Codec.readVarint(delta, pos)];
+        int t = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++] & 0xff;
+            if (op == COPY) {
+                int start = (int) Codec.readVarint(delta, pos);
+                int len = (int) Codec.readVarint(delta, pos);
+                System.arraycopy(base, start, target, t, len);
+                t += len;
+            } else {
+                System.arraycopy(delta, pos[0], target, t, op);
+                pos[0] += op;
+                t += op;
+            }
+        }
+        if (t != target.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return target;
+    }
+
+    /** Write insert instructions for TARGET[FROM .. TO) to OUT.
+     * @param out o
+     * @param target t
+     * @param from f
+     * @param to t */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    /** @return the hash of the block of DATA starting at START.
+     * @param data d
+     * @param start s */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int k = start; k < start + BLOCK; k += 1) {
+            h = h * 31 + data[k];
+        }
+        return h;
+    }
+
+    /** @return true if the LEN bytes of A at I equal those of B at J.
+     * @param a a
+     * @param i i
+     * @param b b
+     * @param j j
+     * @param len l */
+    private static boolean same(byte[] a, int i, byte[] b, int j, int len) {
+        for (int k = 0; k < len; k += 1) {
+            if (a[i + k] != b[j + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
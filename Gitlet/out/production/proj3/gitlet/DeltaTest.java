@@ -0,0 +1,96 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Delta.
+ *  @author Mengzhu Sun
+ */
+public class DeltaTest {
+
+    /** Check that the delta from BASE to TARGET rebuilds TARGET.
+     * @param base b
+     * @param target t
+     * @return the delta */
+    private static byte[] roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta;
+    }
+
+    /** @return N random bytes.
+     * @param rand r
+     * @param n n */
+    private static byte[] bytes(Random rand, int n) {
+        byte[] result = new byte[n];
+        rand.nextBytes(result);
+        return result;
+    }
+
+    /** Empty bases and targets. */
+    @Test
+    public void empty() {
+        byte[] none = {};
+        byte[] some = "some bytes".getBytes();
+        roundTrip(none, none);
+        roundTrip(none, some);
+        roundTrip(some, none);
+    }
+
+    /** A target that is its base with a few bytes changed, inserted and
+     *  deleted is rebuilt, from a delta much smaller than it. */
+    @Test
+    public void edits() {
+        Random rand = new Random(15);
+        for (int trial = 0; trial < 100; trial += 1) {
+            byte[] base = bytes(rand, 1000 + rand.nextInt(5000));
+            byte[] target = base.clone();
+            for (int k = 0; k < 5; k += 1) {
+                int at = rand.nextInt(target.length);
+                byte[] piece = bytes(rand, rand.nextInt(50));
+                byte[] next = new byte[target.length + piece.length];
+                System.arraycopy(target, 0, next, 0, at);
+                System.arraycopy(piece, 0, next, at, piece.length);
+                System.arraycopy(target, at, next, at + piece.length,
+                                 target.length - at);
+                target = next;
+                int cut = rand.nextInt(target.length);
+                int len = Math.min(rand.nextInt(50), target.length - cut);
+                next = new byte[target.length - len];
+                System.arraycopy(target, 0, next, 0, cut);
+                System.arraycopy(target, cut + len, next, cut,
+                                 target.length - cut - len);
+                target = next;
+            }
+            byte[] delta = roundTrip(base, target);
+            assertTrue(delta.length < target.length / 4);
+        }
+    }
+
+    /** Unrelated bases and targets, and long literal runs. */
+    @Test
+    public void unrelated() {
+        Random rand = new Random(16);
+        for (int trial = 0; trial < 50; trial += 1) {
+            roundTrip(bytes(rand, rand.nextInt(3000)),
+                      bytes(rand, rand.nextInt(3000)));
+        }
+    }
+
+    /** A delta applied to a base of another length is refused. */
+    @Test
+    public void wrongBase() {
+        byte[] base = new byte[100];
+        Arrays.fill(base, (byte) 'x');
+        byte[] delta = Delta.create(base, new byte[50]);
+        try {
+            Delta.apply(new byte[99], delta);
+            fail("applied to the wrong base");
+        } catch (GitletException excp) {
+            assertEquals("Delta does not match its base.", excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Line diffs by Myers' O(ND) algorithm, in its linear-space form that
+ *  looks for the middle of the shortest edit script from both ends at
+ *  once and then works on the two halves, as GNU diff does. Halves
+ *  waiting to be worked on are kept on a stack rather than in
+ *  recursive calls, so no input is deep enough to overflow the stack.
+ *
+ *  Lines are given as ints, equal lines having equal numbers. Before
+ *  the search, lines that do not occur at all in the other sequence are
+ *  set aside as changed, since they can never be matched; this keeps
+ *  the search short on files that were largely rewritten. If the search
+ *  for one middle point still grows past a cost proportional to the
+ *  square root of the sizes, the furthest point reached is taken
+ *  instead, which may make the script a little longer than the
+ *  shortest but bounds the time on pathological input.
+ *
+ *  The result is a list of hunks {aStart, aEnd, bStart, bEnd}, each
+ *  saying that lines [aStart, aEnd) of A become lines [bStart, bEnd) of
+ *  B, in order and separated by at least one unchanged line.
+ *  @author Mengzhu Sun
+ */
+class Diff {
+
+    /** The least search cost at which a middle point is approximated. */
+    private static final int MIN_COST = 64;
+
+    /** The kept lines of A. */
+    private final int[] _a;
+    /** The kept lines of B. */
+    private final int[] _b;
+    /** True for each line of A that is changed. */
+    private final boolean[] _aChanged;
+    /** True for each line of B that is changed. */
+    private final boolean[] _bChanged;
+    /** The line of A that each kept line was. */
+    private final int[] _aIndex;
+    /** The line of B that each kept line was. */
+    private final int[] _bIndex;
+    /** The furthest reaching x of the forward search on each diagonal
+     *  x - y, offset by _offset. */
+    private final int[] _fd;
+    /** The furthest reaching x of the backward search on each diagonal,
+     *  offset by _offset. */
+    private final int[] _bd;
+    /** The offset of diagonal 0 in _fd and _bd. */
+    private final int _offset;
+    /** The cost past which a middle point is approximated. */
+    private final int _maxCost;
+    /** The diagonal of the last point found by middle(). */
+    private int _diagonal;
+
+    /** A diff of A and B.
+     * @param a a
+     * @param b b */
+    private Diff(int[] a, int[] b) {
+        _aChanged = new boolean[a.length];
+        _bChanged = new boolean[b.length];
+        _aIndex = keep(a, b, _aChanged);
+        _bIndex = keep(b, a, _bChanged);
+        _a = select(a, _aIndex);
+        _b = select(b, _bIndex);
+        _offset = _b.length + 1;
+        _fd = new int[_a.length + _b.length + 3];
+        _bd = new int[_a.length + _b.length + 3];
+        int bits = 32 - Integer.numberOfLeadingZeros(_a.length + _b.length);
+        _maxCost = Math.max(MIN_COST, 1 << (bits / 2 - 1));
+    }
+
+    /** @return the hunks that turn A into B.
+     * @param a a
+     * @param b b */
+    static List<int[]> lines(int[] a, int[] b) {
+        Diff d = new Diff(a, b);
+        d.compare();
+        shift(a, d._aChanged, d._bChanged);
+        shift(b, d._bChanged, d._aChanged);
+        return d.hunks();
+    }
+
+    /** Mark the changed lines among the kept lines. */
+    private void compare() {
+        ArrayDeque<int[]> boxes = new ArrayDeque<>();
+        boxes.push(new int[] {0, _a.length, 0, _b.length});
+        while (!boxes.isEmpty()) {
+            int[] box = boxes.pop();
+            int xoff = box[0];
+            int xlim = box[1];
+            int yoff = box[2];
+            int ylim = box[3];
+            while (xoff < xlim && yoff < ylim && _a[xoff] == _b[yoff]) {
+                xoff += 1;
+                yoff += 1;
+            }
+            while (xlim > xoff && ylim > yoff
+                   && _a[xlim - 1] == _b[ylim - 1]) {
+                xlim -= 1;
+                ylim -= 1;
+            }
+            if (xoff == xlim) {
+                for (int y = yoff; y < ylim; y += 1) {
+                    _bChanged[_bIndex[y]] = true;
+                }
+            } else if (yoff == ylim) {
+                for (int x = xoff; x < xlim; x += 1) {
+                    _aChanged[_aIndex[x]] = true;
+                }
+            } else {
+                int xmid = middle(xoff, xlim, yoff, ylim);
+                int ymid = xmid - _diagonal;
+                boxes.push(new int[] {xmid, xlim, ymid, ylim});
+                boxes.push(new int[] {xoff, xmid, yoff, ymid});
+            }
+        }
+    }
+
+    /** @return the x of a point on an edit script for lines [XOFF, XLIM)
+     * of _a and [YOFF, YLIM) of _b, neither empty and whose first and
+     * last lines differ, leaving its diagonal x - y in _diagonal. The
+     * point is not a corner of the box, so both halves are smaller.
+     * @param xoff xo
+     * @param xlim xl
+     * @param yoff yo
+     * @param ylim yl */
+    private int middle(int xoff, int xlim, int yoff, int ylim) {
+        int dmin = xoff - ylim;
+        int dmax = xlim - yoff;
+        int fmid = xoff - yoff;
+        int bmid = xlim - ylim;
+        int fmin = fmid;
+        int fmax = fmid;
+        int bmin = bmid;
+        int bmax = bmid;
+        boolean odd = ((fmid - bmid) & 1) != 0;
+        _fd[_offset + fmid] = xoff;
+        _bd[_offset + bmid] = xlim;
+        for (int c = 1;; c += 1) {
+            if (fmin > dmin) {
+                fmin -= 1;
+                _fd[_offset + fmin - 1] = -1;
+            } else {
+                fmin += 1;
+            }
+            if (fmax < dmax) {
+                fmax += 1;
+                _fd[_offset + fmax + 1] = -1;
+            } else {
+                fmax -= 1;
+            }
+            for (int d = fmax; d >= fmin; d -= 2) {
+                int lo = _fd[_offset + d - 1];
+                int hi = _fd[_offset + d + 1];
+                int x = lo >= hi ? lo + 1 : hi;
+                int y = x - d;
+                while (x < xlim && y < ylim && _a[x] == _b[y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _fd[_offset + d] = x;
+                if (odd && bmin <= d && d <= bmax
+                    && _bd[_offset + d] <= x) {
+                    _diagonal = d;
+                    return x;
+                }
+            }
+            if (bmin > dmin) {
+                bmin -= 1;
+                _bd[_offset + bmin - 1] = Integer.MAX_VALUE;
+            } else {
+                bmin += 1;
+            }
+            if (bmax < dmax) {
+                bmax += 1;
+                _bd[_offset + bmax + 1] = Integer.MAX_VALUE;
+            } else {
+                bmax -= 1;
+            }
+            for (int d = bmax; d >= bmin; d -= 2) {
+                int lo = _bd[_offset + d - 1];
+                int hi = _bd[_offset + d + 1];
+                int x = lo < hi ? lo : hi - 1;
+                int y = x - d;
+                while (x > xoff && y > yoff && _a[x - 1] == _b[y - 1]) {
+                    x -= 1;
+                    y -= 1;
+                }
+                _bd[_offset + d] = x;
+                if (!odd && fmin <= d && d <= fmax
+                    && x <= _fd[_offset + d]) {
+                    _diagonal = d;
+                    return x;
+                }
+            }
+            if (c >= _maxCost) {
+                return furthest(xoff, xlim, yoff, ylim,
+                                fmin, fmax, bmin, bmax);
+            }
+        }
+    }
+
+    /** @return the x of the point, among those the forward search
+     * reached on diagonals [FMIN, FMAX] and the backward search on
+     * [BMIN, BMAX], that is furthest from its own end of the box
+     * [XOFF, XLIM) x [YOFF, YLIM), leaving its diagonal in _diagonal.
+     * @param xoff xo
+     * @param xlim xl
+     * @param yoff yo
+     * @param ylim yl
+     * @param fmin fmin
+     * @param fmax fmax
+     * @param bmin bmin
+     * @param bmax bmax */
+    private int furthest(int xoff, int xlim, int yoff, int ylim,
+                         int fmin, int fmax, int bmin, int bmax) {
+        int fbest = -1;
+        int fx = xoff;
+        for (int d = fmax; d >= fmin; d -= 2) {
+            int x = Math.min(_fd[_offset + d], xlim);
+            int y = x - d;
+            if (y > ylim) {
+                x = ylim + d;
+                y = ylim;
+            }
+            if (x + y > fbest) {
+                fbest = x + y;
+                fx = x;
+            }
+        }
+        int bbest = Integer.MAX_VALUE;
+        int bx = xlim;
+        for (int d = bmax; d >= bmin; d -= 2) {
+            int x = Math.max(xoff, _bd[_offset + d]);
+            int y = x - d;
+            if (y < yoff) {
+                x = yoff + d;
+                y = yoff;
+            }
+            if (x + y < bbest) {
+                bbest = x + y;
+                bx = x;
+            }
+        }
+        int x;
+        int y;
+        if (xlim + ylim - bbest < fbest - (xoff + yoff)) {
+            x = fx;
+            y = fbest - fx;
+        } else {
+            x = bx;
+            y = bbest - bx;
+        }
+        if (x <= xoff && y <= yoff || x >= xlim && y >= ylim) {
+            x = xoff + 1;
+            y = yoff;
+        }
+        _diagonal = x - y;
+        return x;
+    }
+
+    /** Slide each run of CHANGED lines of LINES, where the lines at its
+     *  two ends allow, to join the runs before and after it, and then to
+     *  line up with a run of OTHER, the changed lines of the other
+     *  sequence, if it can, as GNU diff does. An edit script can put a
+     *  change anywhere in a run of equal lines; this puts it next to the
+     *  changes it goes with, so that hunks are not split needlessly and
+     *  a merge does not see a conflict with an edit nearby.
+     * @param lines l
+     * @param changed c
+     * @param other o */
+    private static void shift(int[] lines, boolean[] changed,
+                              boolean[] other) {
+        int n = lines.length;
+        boolean[] ch = pad(changed);
+        boolean[] oc = pad(other);
+        int i = 0;
+        int j = 0;
+        while (true) {
+            while (i < n && !ch[i + 1]) {
+                while (oc[j + 1]) {
+                    j += 1;
+                }
+                j += 1;
+                i += 1;
+            }
+            if (i == n) {
+                break;
+            }
+            int start = i;
+            i += 1;
+            while (ch[i + 1]) {
+                i += 1;
+            }
+            while (oc[j + 1]) {
+                j += 1;
+            }
+            int corresponding;
+            int length;
+            do {
+                length = i - start;
+                while (start > 0 && lines[start - 1] == lines[i - 1]) {
+                    start -= 1;
+                    ch[start + 1] = true;
+                    i -= 1;
+                    ch[i + 1] = false;
+                    while (ch[start]) {
+                        start -= 1;
+                    }
+                    j -= 1;
+                    while (oc[j + 1]) {
+                        j -= 1;
+                    }
+                }
+                corresponding = oc[j] ? i : n;
+                while (i != n && lines[start] == lines[i]) {
+                    ch[start + 1] = false;
+                    start += 1;
+                    ch[i + 1] = true;
+                    i += 1;
+                    while (ch[i + 1]) {
+                        i += 1;
+                    }
+                    j += 1;
+                    while (oc[j + 1]) {
+                        corresponding = i;
+                        j += 1;
+                    }
+                }
+            } while (length != i - start);
+            while (corresponding < i) {
+                start -= 1;
+                ch[start + 1] = true;
+                i -= 1;
+                ch[i + 1] = false;
+                j -= 1;
+                while (oc[j + 1]) {
+                    j -= 1;
+                }
+            }
+        }
+        System.arraycopy(ch, 1, changed, 0, n);
+    }
+
+    /** @return FLAGS with a false added at each end.
+     * @param flags f */
+    private static boolean[] pad(boolean[] flags) {
+        boolean[] result = new boolean[flags.length + 2];
+        System.arraycopy(flags, 0, result, 1, flags.length);
+        return result;
+    }
+
+    /** @return the hunks of the changed lines marked. */
+    private List<int[]> hunks() {
+        List<int[]> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < _aChanged.length || j < _bChanged.length) {
+            if (i < _aChanged.length && j < _bChanged.length
+                && !_aChanged[i] && !_bChanged[j]) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int i0 = i;
+            int j0 = j;
+            while (i < _aChanged.length && _aChanged[i]) {
+                i += 1;
+            }
+            while (j < _bChanged.length && _bChanged[j]) {
+                j += 1;
+            }
+            result.add(new int[] {i0, i, j0, j});
+        }
+        return result;
+    }
+
+    /** @return the positions in A of the lines that occur in B, marking
+     * the others in CHANGED.
+     * @param a a
+     * @param b b
+     * @param changed c */
+    private static int[] keep(int[] a, int[] b, boolean[] changed) {
+        int max = 0;
+        for (int line : b) {
+            max = Math.max(max, line);
+        }
+        boolean[] inB = new boolean[max + 1];
+        for (int line : b) {
+            inB[line] = true;
+        }
+        int[] kept = new int[a.length];
+        int n = 0;
+        for (int i = 0; i < a.length; i += 1) {
+            if (a[i] <= max && inB[a[i]]) {
+                kept[n++] = i;
+            } else {
+                changed[i] = true;
+            }
+        }
+        int[] result = new int[n];
+        System.arraycopy(kept, 0, result, 0, n);
+        return result;
+    }
+
+    /** @return the lines of A at INDEX.
+     * @param a a
+     * @param index i */
+    private static int[] select(int[] a, int[] index) {
+        int[] result = new int[index.length];
+        for (int i = 0; i < index.length; i += 1) {
+            result[i] = a[index[i]];
+        }
+        return result;
+    }
+}
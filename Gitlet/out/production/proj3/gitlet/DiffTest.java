@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff.
+ *  @author Mengzhu Sun
+ */
+public class DiffTest {
+
+    /** @return A with the HUNKS that turn it into another sequence
+     * applied, checking that they are in order and apart.
+     * @param a a
+     * @param b the sequence the hunks should give, for their lines
+     * @param hunks h */
+    private static int[] apply(int[] a, int[] b, List<int[]> hunks) {
+        ArrayList<Integer> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        for (int[] h : hunks) {
+            assertTrue("hunks out of order or touching",
+                       h[0] > i || h[0] == 0 && i == 0);
+            assertTrue("empty hunk", h[0] < h[1] || h[2] < h[3]);
+            assertEquals("hunk misplaced in B", h[0] - i, h[2] - j);
+            for (; i < h[0]; i += 1) {
+                result.add(a[i]);
+            }
+            for (j = h[2]; j < h[3]; j += 1) {
+                result.add(b[j]);
+            }
+            i = h[1];
+        }
+        for (; i < a.length; i += 1) {
+            result.add(a[i]);
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** @return N random lines drawn from RANGE different ones.
+     * @param rand r
+     * @param n n
+     * @param range r */
+    private static int[] lines(Random rand, int n, int range) {
+        int[] result = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            result[k] = rand.nextInt(range);
+        }
+        return result;
+    }
+
+    /** @return A with random lines changed, inserted and deleted.
+     * @param rand r
+     * @param a a
+     * @param range r */
+    private static int[] edit(Random rand, int[] a, int range) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int line : a) {
+            switch (rand.nextInt(10)) {
+            case 0:
+                break;
+            case 1:
+                result.add(rand.nextInt(range));
+                break;
+            case 2:
+                result.add(line);
+                result.add(rand.nextInt(range));
+                break;
+            default:
+                result.add(line);
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Equal sequences have no hunks. */
+    @Test
+    public void identical() {
+        int[] a = {1, 2, 3, 2, 1};
+        assertTrue(Diff.lines(a, a.clone()).isEmpty());
+    }
+
+    /** Everything is inserted into or deleted from an empty sequence. */
+    @Test
+    public void fromAndToEmpty() {
+        int[] a = {1, 2, 3};
+        int[] none = {};
+        assertArrayEquals(a, apply(none, a, Diff.lines(none, a)));
+        assertArrayEquals(none, apply(a, none, Diff.lines(a, none)));
+    }
+
+    /** The hunks turn A into B, on edits of files with many repeated
+     *  lines, which exercise the sliding of hunks, and with few. */
+    @Test
+    public void reconstructsTarget() {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 500; trial += 1) {
+            int range = trial % 2 == 0 ? 4 : 1000;
+            int[] a = lines(rand, rand.nextInt(200), range);
+            int[] b = edit(rand, a, range);
+            assertArrayEquals(b, apply(a, b, Diff.lines(a, b)));
+            assertArrayEquals(a, apply(b, a, Diff.lines(b, a)));
+        }
+    }
+
+    /** Unrelated sequences, where the search is cut short. */
+    @Test
+    public void reconstructsUnrelated() {
+        Random rand = new Random(62);
+        int[] a = lines(rand, 5000, 50);
+        int[] b = lines(rand, 5000, 50);
+        assertArrayEquals(b, apply(a, b, Diff.lines(a, b)));
+    }
+
+    /** An insertion into a run of equal lines is put next to the lines
+     *  around it the same way whichever way the diff goes. */
+    @Test
+    public void insertionInRepeats() {
+        int[] a = {7, 1, 1, 1, 8};
+        int[] b = {7, 1, 1, 1, 1, 8};
+        List<int[]> hunks = Diff.lines(a, b);
+        assertEquals(1, hunks.size());
+        assertArrayEquals(new int[] {4, 4, 4, 5}, hunks.get(0));
+        hunks = Diff.lines(b, a);
+        assertEquals(1, hunks.size());
+        assertArrayEquals(new int[] {4, 5, 4, 4}, hunks.get(0));
+    }
+}
@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static gitlet.Utils.*;
+
+/** A directory of files named by SHA-1 IDs, spread over up to 256
+ *  subdirectories named by the first two hexadecimal digits of the ID,
+ *  as git does, so that no single directory grows past a few hundred
+ *  entries however many files there are. The file of ID ab12... is
+ *  ab/12.... Files written by earlier versions directly in the
+ *  directory are still found, and migrate() moves them into place.
+ *  @author Mengzhu Sun
+ */
+class FanOutDir {
+
+    /** Number of digits of an ID that name its subdirectory. */
+    private static final int SHARD = 2;
+
+    /** The directory. */
+    private final File _dir;
+
+    /** The fan-out directory DIR.
+     * @param dir d */
+    FanOutDir(File dir) {
+        _dir = dir;
+    }
+
+    /** @return the directory. */
+    File getDir() {
+        return _dir;
+    }
+
+    /** @return the file of ID, wherever it is stored if it exists.
+     * @param id id */
+    File file(String id) {
+        File f = sharded(id);
+        if (!f.exists()) {
+            File flat = new File(_dir, id);
+            if (flat.isFile()) {
+                return flat;
+            }
+        }
+        return f;
+    }
+
+    /** @return the file a new ID is to be written to, after creating
+     * its subdirectory.
+     * @param id id */
+    File create(String id) {
+        File f = sharded(id);
+        f.getParentFile().mkdirs();
+        return f;
+    }
+
+    /** @return true if there is a file for ID.
+     * @param id id */
+    boolean contains(String id) {
+        return file(id).isFile();
+    }
+
+    /** @return the IDs of all the files. They are listed one subdirectory
+     * at a time as the iteration gets to it, never all at once. */
+    Iterable<String> ids() {
+        return IDIterator::new;
+    }
+
+    /** Move every file of an earlier version that is directly in the
+     *  directory into its subdirectory. */
+    void migrate() {
+        String[] names = _dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (isID(name, UID_LENGTH) && new File(_dir, name).isFile()) {
+                try {
+                    Files.move(new File(_dir, name).toPath(),
+                               create(name).toPath(),
+                               StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+    }
+
+    /** @return the place of ID in a subdirectory.
+     * @param id id */
+    private File sharded(String id) {
+        if (id.length() <= SHARD) {
+            return new File(_dir, id);
+        }
+        return new File(new File(_dir, id.substring(0, SHARD)),
+                        id.substring(SHARD));
+    }
+
+    /** @return true if NAME is LENGTH lower-case hexadecimal digits.
+     * @param name n
+     * @param length l */
+    private static boolean isID(String name, int length) {
+        return name.length() == length && name.matches("[0-9a-f]+");
+    }
+
+    /** Iterates over the IDs of the files, listing one subdirectory at a
+     *  time. */
+    private class IDIterator implements Iterator<String> {
+
+        /** The entries of the directory itself. */
+        private final String[] _top;
+        /** The next entry of _top to look at. */
+        private int _nextTop;
+        /** The prefix of the IDs in _names. */
+        private String _prefix;
+        /** The names in the subdirectory being listed. */
+        private String[] _names;
+        /** The next of _names to look at. */
+        private int _nextName;
+        /** The next ID, or null if it has not been found yet. */
+        private String _next;
+
+        /** An iterator starting at the first subdirectory. */
+        IDIterator() {
+            String[] top = _dir.list();
+            _top = top == null ? new String[0] : top;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_next == null) {
+                if (_names != null && _nextName < _names.length) {
+                    String name = _names[_nextName++];
+                    if (isID(_prefix + name, UID_LENGTH)) {
+                        _next = _prefix + name;
+                    }
+                } else if (_nextTop < _top.length) {
+                    String name = _top[_nextTop++];
+                    File f = new File(_dir, name);
+                    if (isID(name, SHARD) && f.isDirectory()) {
+                        String[] names = f.list();
+                        _names = names == null ? new String[0] : names;
+                        _nextName = 0;
+                        _prefix = name;
+                    } else if (isID(name, UID_LENGTH) && f.isFile()) {
+                        _next = name;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String id = _next;
+            _next = null;
+            return id;
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package gitlet;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import static gitlet.Utils.*;
 
 
@@ -30,12 +47,24 @@ public class Gitlet implements Serializable {
     private File gitlet = new File(wkdir, ".gitlet");
     /** c. */
     private File commit = new File(gitlet, "commit");
+    /** The commit files, in subdirectories by the first digits of ID. */
+    private FanOutDir commits = new FanOutDir(commit);
     /** b. */
     private File branch = new File(gitlet, "branch");
-    /** a. */
-    private File addStaging = new File(gitlet, "addStaging");
-    /** r. */
-    private File removeStaging = new File(gitlet, "removeStaging");
+    /** The files staged for addition and removal. */
+    private Stage stage = new Stage(gitlet);
+    /** The object store holding the contents of every blob. */
+    private ObjectStore objects = new ObjectStore(gitlet);
+    /** The commit graph, used to walk history. */
+    private CommitGraph graph = new CommitGraph(gitlet);
+    /** The stat cache, used to avoid re-reading unchanged files. */
+    private StatCache stat = new StatCache(gitlet);
+    /** The working directory, scanned and hashed in parallel. */
+    private WorkTree work = new WorkTree(wkdir, stat);
+    /** The branches and HEAD. */
+    private Refs refs = new Refs(gitlet);
+    /** The index of commit messages, used by find. */
+    private MessageIndex messages = new MessageIndex(gitlet);
 
 
     /** @return current commit. */
@@ -51,7 +80,7 @@ public class Gitlet implements Serializable {
         HashMap<String, String> remoteM = r.getMap();
         if (remoteM.containsKey(name)) {
             System.out.println("A remote with that name already exists.");
-            System.exit(0);
+            exit();
         }
         remoteM.put(name, path);
         Remote re = new Remote(remoteM);
@@ -60,7 +89,7 @@ public class Gitlet implements Serializable {
     /** @return remote */
     Remote deserializeRemote() {
         File r = new File(gitlet, "remote");
-        return readObject(r, Remote.class);
+        return Remote.read(r);
     }
     /** Do rm remote.
      * @param name n */
@@ -69,49 +98,92 @@ public class Gitlet implements Serializable {
         HashMap<String, String> rM = r.getMap();
         if (!rM.containsKey(name)) {
             System.out.println("A remote with that name does not exist.");
-            System.exit(0);
+            exit();
         }
         rM.remove(name);
         Remote re = new Remote(rM);
         re.serializeRemote();
     }
-    /** Do push.
-     * @param name n
-     * @param branchName b*/
-    public void push(String name, String branchName) {
-        Remote r = deserializeRemote();
-        HashMap<String, String> rM = r.getMap();
-        if (!rM.containsKey(name)) {
-            System.out.println("Remote directory not found.");
-            System.exit(0);
+    /** @return the .gitlet directory of the remote NAME, ending the
+     * command if there is no such remote or it does not exist. A
+     * relative path is taken from the working directory.
+     * @param name n */
+    private File remoteDir(String name) {
+        String path = deserializeRemote().getMap().get(name);
+        File dir = null;
+        if (path != null) {
+            dir = new File(path.replace('/', File.separatorChar));
+            if (!dir.isAbsolute()) {
+                dir = new File(wkdir, dir.getPath());
+            }
         }
-        String path = rM.get(name);
-        File b = new File(path + "/branch/" + branchName);
-        Commit rbh = readObject(b, Commit.class);
-        Commit lbh = deserializeBranch(branchName);
-        String remoteID = rbh.getCommitID();
-        String localID = lbh.getCommitID();
-        List<String> allC = plainFilenamesIn(commit);
-        if (!allC.contains(remoteID)) {
-            System.out.println("Please pull down"
-                    + " remote changes before pushing.");
-            System.exit(0);
+        if (dir == null || !dir.isDirectory()) {
+            System.out.println("Remote directory not found.");
+            exit();
         }
+        return dir;
+    }
 
-        writeObject(new File(path, "HEAD"), serialize(lbh));
+    /** Report the counts of TRANSFER if gitlet.verbose is set.
+     * @param transfer t */
+    private static void report(Transfer transfer) {
+        if (Boolean.getBoolean("gitlet.verbose")) {
+            System.err.printf("%d commits, %d objects copied%n",
+                              transfer.commits(), transfer.objects());
+        }
+    }
 
+    /** Do push: append the commits of the current branch to the branch
+     * BRANCHNAME of the remote NAME, creating it if need be, copying
+     * only the commits and objects the remote lacks. The remote branch
+     * must be in the history of the current one.
+     * @param name n
+     * @param branchName b*/
+    public void push(String name, String branchName) {
+        File dir = remoteDir(name);
+        Refs remote = new Refs(dir);
+        String remoteID = remote.get(branchName);
+        String localID = refs.get(refs.head());
+        if (remoteID != null) {
+            int remotePos = graph.position(remoteID);
+            if (remotePos == CommitGraph.NONE
+                || !graph.reaches(graph.require(localID), remotePos)) {
+                System.out.println("Please pull down"
+                        + " remote changes before pushing.");
+                exit();
+            }
+        }
+        Transfer transfer = new Transfer(gitlet, dir);
+        transfer.copy(localID);
+        remote.set(branchName, localID);
+        report(transfer);
     }
-    /** Do fetch.
+
+    /** Do fetch: copy the branch BRANCHNAME of the remote NAME into the
+     * branch NAME/BRANCHNAME, with only the commits and objects this
+     * repository lacks.
      * @param name n
      * @param branchName b */
     public void fetch(String name, String branchName) {
-
+        File dir = remoteDir(name);
+        String remoteID = new Refs(dir).get(branchName);
+        if (remoteID == null) {
+            System.out.println("That remote does not have that branch.");
+            exit();
+        }
+        Transfer transfer = new Transfer(dir, gitlet);
+        transfer.copy(remoteID);
+        refs.set(name + "/" + branchName, remoteID);
+        report(transfer);
     }
-    /** Do pull.
+
+    /** Do pull: fetch the branch BRANCHNAME of the remote NAME and merge
+     * it into the current branch.
      * @param name n
      * @param branchName b*/
     public void pull(String name, String branchName) {
-
+        fetch(name, branchName);
+        merge(name + "/" + branchName);
     }
 
     /** Do init. */
@@ -119,15 +191,16 @@ public class Gitlet implements Serializable {
         if (gitlet.exists()) {
             System.out.println("Gitlet version-control system"
                     + " already exists in the current directory.");
-            System.exit(0);
+            exit();
         } else {
             gitlet.mkdir();
             commit.mkdir();
             branch.mkdir();
-            addStaging.mkdir();
-            removeStaging.mkdir();
+            objects.getDir().mkdir();
 
             _currCommit = new Commit();
+            graph.add(_currCommit);
+            messages.add(_currCommit);
             _currBranch = "master";
             _allBranches = new ArrayList<>();
             _allBranches.add("master");
@@ -139,43 +212,58 @@ public class Gitlet implements Serializable {
         }
     }
 
-    /** Do git add.
-     * @param f f */
-    public void add(String f) {
-        File x = new File(f);
-        if (!x.exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
-        }
-
+    /** Do git add of every file PATHS names, each a file, a directory
+     * or a glob pattern (see WorkTree.expand). A file staged for removal
+     * is only taken off the stage, and one that is the same as in the
+     * head commit is unstaged; the rest are stored and staged. HEAD is
+     * read and the stage written once for all of them, and the files are
+     * hashed in parallel. Nothing is staged if any file does not exist.
+     * Directories and patterns leave out the IGNORED files at the top of
+     * the working directory unless they are tracked or staged.
+     * @param paths p */
+    public void add(String... paths) {
         _currCommit = deserializeHead();
-
-        File checkRemove = new File(removeStaging, f);
-        if (checkRemove.exists()) {
-            checkRemove.delete();
-            System.exit(0);
+        HashMap<String, String> m = _currCommit.getMap();
+        TreeSet<String> names = expand(paths, () -> {
+            ArrayList<String> files = new ArrayList<>();
+            for (String name : work.files()) {
+                if (!WorkTree.ignored(name) || m.containsKey(name)
+                    || stage.isAdded(name)) {
+                    files.add(name);
+                }
+            }
+            return files;
+        });
+        for (String name : names) {
+            if (!new File(wkdir, name).isFile()) {
+                System.out.println("File does not exist.");
+                exit();
+            }
         }
 
-        HashMap<String, Blob> m = _currCommit.getMap();
+        ArrayList<String> changed = new ArrayList<>();
+        for (String name : names) {
+            if (stage.isRemoved(name)) {
+                stage.unstage(name);
+            } else {
+                changed.add(name);
+            }
+        }
 
-        for (String name : m.keySet()) {
-            if (name.equals(f)
-                    && readContentsAsString(x).equals(m.get(f).getContent())) {
-                File checkAdd = new File(addStaging, f);
-                if (checkAdd.exists()) {
-                    checkAdd.delete();
+        TreeMap<String, String> ids = work.hash(changed);
+        for (String name : ids.keySet()) {
+            String id = ids.get(name);
+            if (id.equals(m.get(name))) {
+                stage.unstage(name);
+            } else {
+                if (!objects.contains(id)) {
+                    id = objects.writeFile(new File(wkdir, name));
                 }
-                System.exit(0);
+                stage.add(name, id);
             }
         }
-
-        Blob blob = new Blob(f);
-        blobToAddingStage(blob);
-    }
-    /** @param blob */
-    void blobToAddingStage(Blob blob) {
-        File f = new File(addStaging, blob.getName());
-        writeContents(f, serialize(blob));
+        stage.save();
+        stat.save();
     }
 
     /** Do git commit.
@@ -183,158 +271,269 @@ public class Gitlet implements Serializable {
     public void commit(String message) {
         if (message.length() == 0 || message.equals(" ")) {
             System.out.println("Please enter a commit message.");
-            System.exit(0);
+            exit();
         }
 
-        if (addStaging.list().length == 0
-            && removeStaging.list().length == 0) {
+        if (stage.isEmpty()) {
             System.out.println("No changes added to the commit.");
-            System.exit(0);
+            exit();
         }
 
         _currCommit = deserializeHead();
         _currBranch = getCurrCommit().getBranch();
-        ArrayList<Blob> blobList = new ArrayList<>();
-        HashMap<String, Blob> map = _currCommit.getMap();
-
-        List<String> checkRemove = plainFilenamesIn(removeStaging);
-        for (String name : checkRemove) {
-            map.remove(name);
-        }
-
-        for (Blob b : map.values()) {
-            blobList.add(b);
-        }
-
-        for (File file : addStaging.listFiles()) {
-            Blob b = deserializeBlob(file);
-            blobList.add(b);
+        TreeMap<String, String> changes = new TreeMap<>(stage.added());
+        for (String name : stage.removed()) {
+            changes.put(name, null);
         }
+        String tree = Tree.update(objects, _currCommit.getTree(), changes);
         String[] checkMerge = message.split("\\s+");
         if (checkMerge[0].equals("Merged")) {
             String branchName = checkMerge[1];
             Commit b = deserializeBranch(branchName);
             _currCommit = new Commit(message,
                     _currCommit.getCommitID(), b.getCommitID(),
-                    _currCommit.getBranch(), blobList);
+                    _currCommit.getBranch(), tree);
         } else {
             _currCommit = new Commit(message, _currCommit.getCommitID(), null,
-                    _currCommit.getBranch(), blobList);
+                    _currCommit.getBranch(), tree);
         }
         _currCommit.serializeCommit();
+        graph.add(_currCommit);
+        messages.add(_currCommit);
 
         updateHead();
         serializeBranch(_currBranch, getCurrCommit());
 
-        clearDir(addStaging);
-        clearDir(removeStaging);
-
+        stage.clear();
+        stage.save();
     }
 
     /** @param branchName bn
      * @return commit */
     Commit deserializeBranch(String branchName) {
-        File f = new File(branch, branchName);
-        return readObject(f, Commit.class);
+        Commit c = deserializeCommit(refs.get(branchName));
+        c.setBranch(branchName);
+        return c;
     }
 
-    /** Do git rm.
-     * @param filename f */
-    public void rm(String filename) {
+    /** Do git rm of every file PATHS names, each a file, a directory or
+     * a glob pattern, which for rm match the files tracked or staged for
+     * addition. A staged file is only unstaged; a tracked one is staged
+     * for removal and deleted. Nothing changes if any file named is
+     * neither tracked nor staged.
+     * @param paths p */
+    public void rm(String... paths) {
         _currCommit = deserializeHead();
-
-        File file = new File(filename);
-        if (!file.exists()
-                && !_currCommit.getMap().keySet().contains(filename)) {
-            System.out.println("File does not exist.");
-            System.exit(0);
+        HashMap<String, String> m = _currCommit.getMap();
+        TreeSet<String> names = expand(paths, () -> {
+            TreeSet<String> known = new TreeSet<>(m.keySet());
+            known.addAll(stage.added().keySet());
+            return known;
+        });
+
+        for (String name : names) {
+            if (!new File(wkdir, name).exists() && !m.containsKey(name)) {
+                System.out.println("File does not exist.");
+                exit();
+            }
+        }
+        for (String name : names) {
+            if (!stage.isAdded(name) && !m.containsKey(name)) {
+                System.out.println("No reason to remove the file.");
+                exit();
+            }
         }
 
-        List<String> addFiles = plainFilenamesIn(addStaging);
-        if (!addFiles.contains(filename)
-                && !_currCommit.getMap().keySet().contains(filename)) {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+        for (String name : names) {
+            if (stage.isAdded(name)) {
+                stage.unstage(name);
+            } else {
+                stage.remove(name);
+                deleteWorkFile(new File(wkdir, name));
+            }
         }
+        stage.save();
+    }
 
-        if (addFiles.contains(filename)) {
-            File checkAdd = new File(addStaging, filename);
-            checkAdd.delete();
-            System.exit(0);
+    /** @return the files PATHS name, those named by directories and
+     * patterns being taken from CANDIDATES, ending the command if a
+     * pattern matches nothing.
+     * @param paths p
+     * @param candidates c */
+    private TreeSet<String> expand(String[] paths,
+                                   Supplier<Collection<String>> candidates) {
+        try {
+            return work.expand(paths, candidates);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+            exit();
+            return null;
         }
+    }
 
-        if (_currCommit.getMap() != null) {
-            Blob b = _currCommit.getMap().get(filename);
-            blobToRemoveStage(b);
+    /** Do git log. */
+    public void log() {
+        log(-1, Long.MIN_VALUE);
+    }
+
+    /** Do git log, showing at most LIMIT commits, or all of them if LIMIT
+     * is negative, and stopping at the first commit older than SINCE, in
+     * seconds since the epoch. History is walked in the commit graph and
+     * only the header of each commit shown is read. Output is written as
+     * the walk goes and the walk stops if standard output is closed, so
+     * piping into head returns at once.
+     * @param limit l
+     * @param since s */
+    public void log(int limit, long since) {
+        Writer out = stdout();
+        int pos = graph.require(refs.get(refs.head()));
+        for (int n = 0; pos != CommitGraph.NONE && n != limit
+                 && graph.time(pos) >= since && !System.out.checkError();
+             n += 1) {
+            logEntry(out, deserializeCommitHeader(graph.id(pos)));
+            pos = graph.parent1(pos);
         }
+        flush(out);
+    }
 
-        restrictedDelete(new File(wkdir, filename));
+    /** Do global log. */
+    public void globalLog() {
+        globalLog(-1, Long.MIN_VALUE);
     }
 
-    /** @param blob b */
-    void blobToRemoveStage(Blob blob) {
-        File f = new File(removeStaging, blob.getName());
-        writeContents(f, serialize(blob));
+    /** Do global log, newest commit first, showing at most LIMIT commits
+     * (all if LIMIT is negative) and only those made at or after SINCE, in
+     * seconds since the epoch. Times are taken from the commit graph, so
+     * only the headers of the commits shown are read, and output is
+     * streamed as for log.
+     * @param limit l
+     * @param since s */
+    public void globalLog(int limit, long since) {
+        Writer out = stdout();
+        for (int pos = graph.size() - 1, n = 0; pos >= 0 && n != limit
+                 && !System.out.checkError(); pos -= 1) {
+            if (graph.time(pos) >= since) {
+                logEntry(out, deserializeCommitHeader(graph.id(pos)));
+                n += 1;
+            }
+        }
+        flush(out);
     }
 
-    /** Do git log. */
-    public void log() {
-        _currCommit = deserializeHead();
-        String commitID = getCurrCommit().getCommitID();
-        while (commitID != null) {
-            logHelper(commitID);
-            Commit currCommit = deserializeCommit(commitID);
-            commitID = currCommit.getParent1ID();
+    /** @return DATE, given as yyyy-MM-dd, as the seconds since the epoch
+     * at the start of that day here, for the SINCE of log and globalLog.
+     * @param date d */
+    public static long parseSince(String date) {
+        try {
+            return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault())
+                    .toEpochSecond();
+        } catch (DateTimeParseException excp) {
+            System.out.println("Incorrect date: " + date);
+            exit();
+            return 0;
         }
     }
 
-    /** Display the information of one commit.
-     * @param commitID c */
-    public void logHelper(String commitID) {
-        Commit currCommit = deserializeCommit(commitID);
-        System.out.println("==="
-                + "\n" + "commit " + currCommit.getCommitID()
-                + "\n" + "Date: " + currCommit.getTimeStamp()
-                + "\n" + currCommit.getLogMsg()
-                + "\n");
+    /** @return a buffered writer onto standard output, to be flushed with
+     * flush(). */
+    private static Writer stdout() {
+        return new BufferedWriter(new OutputStreamWriter(System.out,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
     }
 
-    /** Display the information of one commit.
+    /** Write the log entry of the commit C to OUT: a line of ===, its ID,
+     * its date, its message and an empty line.
+     * @param out o
      * @param c c */
-    public void logHelper(Commit c) {
-        System.out.println("==="
-                + "\n" + "commit " + c.getCommitID()
-                + "\n" + "Date: " + c.getTimeStamp()
-                + "\n" + c.getLogMsg()
-                + "\n");
+    private static void logEntry(Writer out, Commit c) {
+        try {
+            out.write("===\ncommit ");
+            out.write(c.getCommitID());
+            out.write("\nDate: ");
+            out.write(c.getTimeStamp());
+            out.write("\n");
+            out.write(c.getLogMsg());
+            out.write("\n\n");
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
     }
 
-    /** Do global log. */
-    public void globalLog() {
-        for (File f : commit.listFiles()) {
-            if (!f.isDirectory()) {
-                Commit cmt = deserializeCommit(f);
-                logHelper(cmt);
+    /** Flush OUT.
+     * @param out o */
+    private static void flush(Writer out) {
+        try {
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Do git gc. Consolidate all objects into a single pack, storing
+     * the older versions of each file as deltas against newer ones, and
+     * all branches into packed-refs. Commits are visited newest first
+     * in the order of the commit graph. */
+    public void gc() {
+        LinkedHashMap<String, LinkedHashSet<String>> versions =
+                new LinkedHashMap<>();
+        for (int pos = graph.size() - 1; pos >= 0; pos -= 1) {
+            HashMap<String, String> map =
+                    deserializeCommit(graph.id(pos)).getMap();
+            for (String name : map.keySet()) {
+                versions.computeIfAbsent(name, k -> new LinkedHashSet<>())
+                        .add(map.get(name));
             }
         }
+        List<List<String>> chains = new ArrayList<>();
+        for (LinkedHashSet<String> ids : versions.values()) {
+            chains.add(new ArrayList<>(ids));
+        }
+        objects.repack(chains);
+        refs.pack();
+    }
+
+    /** Rewrite every record in .gitlet that is still in the old Java
+     * serialization format in the binary format of Codec, and move
+     * commits and objects into their fan-out subdirectories. Old records
+     * are read either way, so this only saves decoding time later. */
+    public void migrate() {
+        commits.migrate();
+        objects.migrate();
+        for (String id : commits.ids()) {
+            File f = commits.file(id);
+            writeContents(f, Commit.read(f).store(objects).encode());
+        }
+        for (String name : refs.names()) {
+            refs.set(name, refs.get(name));
+        }
+        refs.setHead(refs.head());
+        stage.migrate();
+        deserializeRemote().serializeRemote();
     }
 
-    /** Do git find.
+    /** Do git find. The commits are looked up in the message index.
      * @param commitMessage c */
     public void find(String commitMessage) {
-        boolean exists = false;
-        for (File f : commit.listFiles()) {
-            Commit c = deserializeCommit(f);
-            if (c.getLogMsg().equals(commitMessage)) {
-                System.out.println(c.getCommitID());
-                exists = true;
-            }
+        printFound(messages.find(commitMessage));
+    }
+
+    /** Print the IDs of the commits whose messages contain every word of
+     * QUERY, in any case and order.
+     * @param query q */
+    public void findWords(String query) {
+        printFound(messages.search(query));
+    }
+
+    /** Print IDS, one per line, or say that there are none.
+     * @param ids i */
+    private void printFound(List<String> ids) {
+        for (String id : ids) {
+            System.out.println(id);
         }
-        if (!exists) {
+        if (ids.isEmpty()) {
             System.out.println("Found no commit with that message.");
-            System.exit(0);
+            exit();
         }
-
     }
 
     /** Do git status. */
@@ -342,7 +541,7 @@ public class Gitlet implements Serializable {
         _currCommit = deserializeHead();
         System.out.println("=== Branches ===");
         _currBranch = _currCommit.getBranch();
-        for (String filename : plainFilenamesIn(branch)) {
+        for (String filename : refs.names()) {
             if (filename.equals(_currBranch)) {
                 System.out.println("*" + filename);
             } else {
@@ -352,15 +551,13 @@ public class Gitlet implements Serializable {
         System.out.println(" ");
 
         System.out.println("=== Staged Files ===");
-        List<String> addFiles = plainFilenamesIn(addStaging);
-        for (String name : addFiles) {
+        for (String name : stage.added().keySet()) {
             System.out.println(name);
         }
         System.out.println(" ");
 
         System.out.println("=== Removed Files ===");
-        List<String> removeFiles = plainFilenamesIn(removeStaging);
-        for (String name : removeFiles) {
+        for (String name : stage.removed()) {
             System.out.println(name);
         }
         System.out.println(" ");
@@ -381,11 +578,10 @@ public class Gitlet implements Serializable {
      * @return str */
     private String del(Commit c) {
         String o = "";
-        List<String> local = plainFilenamesIn(wkdir);
-        List<String> rev = plainFilenamesIn(removeStaging);
-        HashMap<String, Blob> map = c.getMap();
+        HashSet<String> local = new HashSet<>(work.files());
+        HashMap<String, String> map = c.getMap();
         for (String s : map.keySet()) {
-            if (!local.contains(s) && !rev.contains(s)) {
+            if (!local.contains(s) && !stage.isRemoved(s)) {
                 o += s + " (deleted)";
             }
         }
@@ -396,22 +592,21 @@ public class Gitlet implements Serializable {
      * @return list */
     private ArrayList<String> modify(Commit currCommit) {
         ArrayList<String> m = new ArrayList<>();
-        HashMap<String, Blob> map = currCommit.getMap();
-        for (File f : wkdir.listFiles()) {
-            if (!f.isDirectory()
-                    && !f.getName().equals(".DS_Store")
-                    && !f.getName().equals("Makefile")
-                    && !f.getName().equals("proj3.iml")
-                    && !f.getName().equals(".gitignore")
-                    && !f.getName().equals("gitlet-design.txt")) {
-                if (map.containsKey(f.getName())) {
-                    String c1 = map.get(f.getName()).getContent();
-                    if (!c1.equals(readContentsAsString(f))) {
-                        m.add(f.getName() + " (modified)");
-                    }
-                }
+        HashMap<String, String> map = currCommit.getMap();
+        ArrayList<String> tracked = new ArrayList<>();
+        for (String name : work.files()) {
+            if (map.containsKey(name)) {
+                tracked.add(name);
+            }
+        }
+        TreeMap<String, String> ids = work.hash(tracked);
+        for (String name : ids.keySet()) {
+            if (!map.get(name).equals(ids.get(name))) {
+                m.add(name + " (modified)");
             }
         }
+        stat.retain(map.keySet());
+        stat.save();
         return m;
     }
 
@@ -420,18 +615,11 @@ public class Gitlet implements Serializable {
      * @param c c */
     public ArrayList<String> getUntrackFiles(Commit c) {
         ArrayList<String> untrack = new ArrayList<>();
-        for (File f : wkdir.listFiles()) {
-            if (!f.isDirectory()
-                && !f.getName().equals(".DS_Store")
-                && !f.getName().equals("Makefile")
-                && !f.getName().equals("proj3.iml")
-                && !f.getName().equals(".gitignore")
-                && !f.getName().equals("gitlet-design.txt")) {
-                String name = f.getName();
-                File t = new File(addStaging, name);
-                if (!c.getMap().keySet().contains(name) && !t.exists()) {
-                    untrack.add(name);
-                }
+        HashMap<String, String> map = c.getMap();
+        for (String name : work.files()) {
+            if (!map.containsKey(name) && !stage.isAdded(name)
+                && !WorkTree.ignored(name)) {
+                untrack.add(name);
             }
         }
         return untrack;
@@ -442,49 +630,39 @@ public class Gitlet implements Serializable {
      * @param fileName f */
     public void checkoutFileName(String fileName) {
         _currCommit = deserializeHead();
-        if (!getCurrCommit().getMap().containsKey(fileName)) {
+        String id = Tree.find(objects, getCurrCommit().getTree(),
+                              WorkTree.relativize(fileName));
+        if (id == null) {
             System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            exit();
         }
-        File f = new File(fileName);
-        String contents = getCurrCommit().getMap().get(fileName).getContent();
-        writeContents(f, contents);
+        objects.copyTo(id, new File(fileName));
     }
 
     /**
      * @param commitID c
      * @param fileName f */
     public void checkoutID(String commitID, String fileName) {
-        File givenCommit = new File(commit, commitID);
+        File givenCommit = commits.file(commitID);
         if (!givenCommit.exists()) {
             System.out.println("No commit with that id exists.");
-            System.exit(0);
+            exit();
         }
-        Commit c = deserializeCommit(givenCommit);
-        HashMap<String, Blob> givenMap = c.getMap();
-        if (!givenMap.containsKey(fileName)) {
+        Commit c = deserializeCommit(commitID);
+        String id = Tree.find(objects, c.getTree(),
+                              WorkTree.relativize(fileName));
+        if (id == null) {
             System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            exit();
         }
-
-        File f = new File(fileName);
-        String contents = givenMap.get(fileName).getContent();
-        writeContents(f, contents);
+        objects.copyTo(id, new File(fileName));
     }
 
     /** @param commitID c
      * @param filename f
      * Take care of cases that the commit ID is the short version. */
     public void checkoutShortID(String commitID, String filename) {
-        List<String> allCommits = plainFilenamesIn(commit);
-        for (String id : allCommits) {
-            if (id.contains(commitID)) {
-                checkoutID(id, filename);
-                System.exit(0);
-            }
-        }
-        System.out.println("No commit with that id exists.");
-        System.exit(0);
+        checkoutID(resolveShortID(commitID), filename);
     }
 
     /** Takes all files in the commit at the head of the given
@@ -494,144 +672,162 @@ public class Gitlet implements Serializable {
      * The Staging area are cleared.
      * @param branchName b */
     public void checkoutBranch(String branchName) {
-        File f = new File(branch, branchName);
-        if (!f.exists()) {
+        if (refs.get(branchName) == null) {
             System.out.println("No such branch exists.");
-            System.exit(0);
+            exit();
         }
         _currCommit = deserializeHead();
         if (_currCommit.getBranch().equals(branchName)) {
             System.out.println("No need to checkout the current branch.");
-            System.exit(0);
+            exit();
         }
         ArrayList<String> untrack = getUntrackFiles(_currCommit);
         if (untrack.size() != 0) {
             System.out.println("There is an untracked "
                     + "file in the way; delete it or add it first.");
-            System.exit(0);
-        }
-        Commit branchHead = readObject(f, Commit.class);
-        HashMap<String, Blob> map = _currCommit.getMap();
-        List<String> local = plainFilenamesIn(wkdir);
-        for (String filename : map.keySet()) {
-            if (local.contains(filename)) {
-                restrictedDelete(filename);
-            }
+            exit();
         }
+        Commit branchHead = deserializeBranch(branchName);
+        switchTree(_currCommit, branchHead, new ArrayList<>());
 
-        HashMap<String, Blob> branchMap = branchHead.getMap();
-        for (String filename : branchMap.keySet()) {
-            File file = new File(filename);
-            String contents = branchMap.get(filename).getContent();
-            writeContents(file, contents);
-        }
-
-        writeContents(new File(".gitlet/HEAD"),
-                Utils.serialize(branchHead));
+        refs.setHead(branchName);
 
-        clearDir(addStaging);
-        clearDir(removeStaging);
+        stage.clear();
+        stage.save();
     }
 
     /** Create a new branch with the given name,
      *  and point it at the current node.
      * @param branchName b */
     public void branch(String branchName) {
-        File newBranch = new File(branch, branchName);
-        if (newBranch.exists()) {
+        if (refs.get(branchName) != null) {
             System.out.println("A branch with that name already exists.");
-            System.exit(0);
+            exit();
         }
-        _currCommit = deserializeHead();
-        _currCommit.setBranch(branchName);
-        writeContents(newBranch, serialize(_currCommit));
+        refs.set(branchName, refs.get(refs.head()));
     }
 
     /** Deletes the branch with the given name.
      * @param branchName b */
     public void rmBranch(String branchName) {
-        File removeB = new File(branch, branchName);
-        if (!removeB.exists()) {
+        if (refs.get(branchName) == null) {
             System.out.println("A branch with that name does not exist.");
         }
-        _currCommit = deserializeHead();
-        if (_currCommit.getBranch().equals(branchName)) {
+        if (refs.head().equals(branchName)) {
             System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            exit();
         }
-        removeB.delete();
+        refs.delete(branchName);
     }
 
     /** Checks out all the files tracked by the given commit.
      * @param commitID c */
     public void reset(String commitID) {
-        File file = new File(commit, commitID);
+        File file = commits.file(commitID);
         if (!file.exists()) {
             System.out.println("No commit with that id exists.");
-            System.exit(0);
+            exit();
         }
         ArrayList<String> untrack = getUntrackFiles(deserializeHead());
         if (untrack.size() != 0) {
             System.out.println("There is an untracked file in "
                     + "the way; delete it or add it first.");
-            System.exit(0);
+            exit();
         }
         Commit givenCommit = deserializeCommit(commitID);
 
         _currCommit = deserializeHead();
-        HashMap<String, Blob> map = _currCommit.getMap();
-        List<String> local = plainFilenamesIn(wkdir);
-        for (String filename : map.keySet()) {
-            if (local.contains(filename)) {
-                restrictedDelete(filename);
+        switchTree(_currCommit, givenCommit,
+                   new ArrayList<>(stage.added().keySet()));
+        String givenBranch = givenCommit.getBranch();
+        refs.setHead(givenBranch);
+        refs.set(givenBranch, givenCommit.getCommitID());
+        stage.clear();
+        stage.save();
+    }
+
+    /** Make the working directory match the commit TO instead of FROM,
+     * touching only the files whose blob IDs differ between the two:
+     * files tracked by FROM but not TO are deleted, and files of TO with
+     * a different blob in FROM are written. Files in STAGED, which were
+     * staged for addition, are replaced too. Files that are the same in
+     * both commits keep their contents and modification times, and
+     * directories with the same tree in both are not even read.
+     * Set the gitlet.verbose property to have the counts reported.
+     * @param from f
+     * @param to t
+     * @param staged s */
+    private void switchTree(Commit from, Commit to, List<String> staged) {
+        TreeMap<String, String[]> changed = new TreeMap<>();
+        Tree.diff(objects, from.getTree(), to.getTree(), "", changed);
+        for (String name : staged) {
+            if (!changed.containsKey(name)) {
+                String id = Tree.find(objects, to.getTree(), name);
+                changed.put(name, new String[] {null, id});
             }
         }
-
-        List<String> addNames = plainFilenamesIn(addStaging);
-        for (String filename : addNames) {
-            if (local.contains(filename)) {
-                restrictedDelete(filename);
+        int deleted = 0;
+        int written = 0;
+        for (String name : changed.keySet()) {
+            String id = changed.get(name)[1];
+            File f = new File(wkdir, name);
+            if (id == null) {
+                if (f.isFile()) {
+                    deleteWorkFile(f);
+                    deleted += 1;
+                }
+            } else {
+                objects.copyTo(id, f);
+                stat.record(name, f, id);
+                written += 1;
             }
         }
-        HashMap<String, Blob> givenMap = givenCommit.getMap();
-        for (String filename : givenMap.keySet()) {
-            File f = new File(wkdir, filename);
-            writeContents(f, givenMap.get(filename).getContent());
+        stat.save();
+        if (Boolean.getBoolean("gitlet.verbose")) {
+            System.err.printf("%d written, %d deleted%n", written, deleted);
+        }
+    }
+
+    /** Delete the working file F, and then each of its directories
+     * that this leaves empty.
+     * @param f f */
+    private void deleteWorkFile(File f) {
+        f.delete();
+        File dir = f.getParentFile();
+        while (dir != null && !dir.equals(wkdir) && dir.delete()) {
+            dir = dir.getParentFile();
         }
-        writeContents(new File(".gitlet/HEAD"),
-                serialize(givenCommit));
-        String givenBranch = givenCommit.getBranch();
-        writeContents(new File(branch, givenBranch),
-                serialize(givenCommit));
-        clearDir(addStaging);
-        clearDir(removeStaging);
     }
 
     /** Take care if the reset ID is the short version.
      * @param commitID c */
     public void resetShortID(String commitID) {
-        List<String> allCommits = plainFilenamesIn(commit);
-        for (String id : allCommits) {
-            if (id.contains(commitID)) {
-                reset(id);
-                System.exit(0);
-            }
+        reset(resolveShortID(commitID));
+    }
+
+    /** @return the full ID of the only commit whose ID starts with the
+     * abbreviation COMMITID, found by binary search of the commit graph.
+     * @param commitID c */
+    private String resolveShortID(String commitID) {
+        try {
+            return graph.resolve(commitID);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+            exit();
+            return null;
         }
-        System.out.println("No commit with that id exists.");
-        System.exit(0);
     }
 
     /** mfc.
      * @param branchName b */
     private void failMerge(String branchName) {
-        if (addStaging.list().length != 0 || removeStaging.list().length != 0) {
+        if (!stage.isEmpty()) {
             System.out.println("You have uncommitted changes.");
-            System.exit(0);
+            exit();
         }
-        List<String> nameList = plainFilenamesIn(branch);
-        if (!nameList.contains(branchName)) {
+        if (refs.get(branchName) == null) {
             System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            exit();
         }
     }
 
@@ -641,69 +837,96 @@ public class Gitlet implements Serializable {
         _currBranch  = _currCommit.getBranch();
         if (branchName.equals(_currBranch)) {
             System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+            exit();
         }
         ArrayList<String> untrack = getUntrackFiles(_currCommit);
         if (untrack.size() != 0) {
             System.out.println("There is an untracked "
                     + "file in the way; delete it or add it first.");
-            System.exit(0);
+            exit();
         }
     }
 
-    /** Merge files from the given branch into the current branch.
+    /** Merge files from the given branch into the current branch. What
+     * happens to each file is decided first, from the blob IDs of the
+     * files that changed between the split point and either branch,
+     * which Tree.diff finds without reading unchanged directories. Files
+     * changed on both sides in different ways have their contents merged
+     * on a pool of gitlet.threads threads. Only then is the working
+     * directory written and the stage updated, in one pass, and the
+     * merge committed.
      * @param branchName b */
     public void merge(String branchName) {
         failMerge(branchName);
         failMerge2(branchName);
         _currCommit = deserializeHead();
         _currBranch  = _currCommit.getBranch();
-        Commit givenBranch =
-                readObject(new File(branch, branchName), Commit.class);
+        Commit givenBranch = deserializeBranch(branchName);
         Commit splitPoint = splitPoint(givenBranch, _currCommit);
         if (splitPoint.getCommitID().equals(givenBranch.getCommitID())) {
             System.out.println(" Given branch is an"
                     + " ancestor of the current branch.");
-            System.exit(0);
+            exit();
         }
         if (splitPoint.getCommitID().equals(_currCommit.getCommitID())) {
-            checkoutBranch(givenBranch.getBranch());
+            switchTree(_currCommit, givenBranch, new ArrayList<>());
+            refs.set(_currBranch, givenBranch.getCommitID());
             System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
+            exit();
         }
+        TreeMap<String, String[]> ours = new TreeMap<>();
+        TreeMap<String, String[]> theirs = new TreeMap<>();
+        Tree.diff(objects, splitPoint.getTree(), _currCommit.getTree(), "",
+                  ours);
+        Tree.diff(objects, splitPoint.getTree(), givenBranch.getTree(), "",
+                  theirs);
+
+        TreeMap<String, String> taken = new TreeMap<>();
+        ArrayList<FileMerge> merges = new ArrayList<>();
+        for (String name : theirs.keySet()) {
+            String base = theirs.get(name)[0];
+            String given = theirs.get(name)[1];
+            String current = ours.containsKey(name)
+                ? ours.get(name)[1] : base;
+            if (Objects.equals(current, given)) {
+                continue;
+            } else if (Objects.equals(current, base)) {
+                taken.put(name, given);
+            } else {
+                merges.add(new FileMerge(name, base, current, given));
+            }
+        }
+        mergeContents(merges);
+
         boolean hasConflict = false;
-        HashMap<String, Blob> split = splitPoint.getMap();
-        HashMap<String, Blob> given = givenBranch.getMap();
-        HashMap<String, Blob> current = _currCommit.getMap();
-        HashSet<String> allFileNames = allIn(split, current, given);
-        for (String name : allFileNames) {
-            if (h1(split, given, current, name)) {
-                rm(name);
-            } else if (h2(split, given, current, name)) {
-                writeContents(new File(name), given.get(name).getContent());
-                add(name);
-            } else if (h3(split, given, current, name)) {
-                writeContents(new File(name), given.get(name).getContent());
-                add(name);
-            } else if (h4(split, given, current, name)) {
-                c1(current, given, name);
-                hasConflict = true;
-            } else if (h5(split, given, current, name)) {
-                c1(current, given, name);
-                hasConflict = true;
-            } else if (h6(split, given, current, name)) {
-                c2(given, name);
-                hasConflict = true;
-            } else if (h7(split, given, current, name)) {
-                String content = "<<<<<<< HEAD\n";
-                content += current.get(name).getContent();
-                content += "=======\n";
-                content += ">>>>>>>\n";
-                writeContents(new File(name), content);
-                hasConflict = true;
-                add(name);
+        for (String name : taken.keySet()) {
+            String id = taken.get(name);
+            File f = new File(wkdir, name);
+            if (id == null) {
+                stage.remove(name);
+                deleteWorkFile(f);
+            } else {
+                objects.copyTo(id, f);
+                stat.record(name, f, id);
+                stage.add(name, id);
             }
         }
+        for (FileMerge m : merges) {
+            byte[] contents = m._contents;
+            String id = objects.write(contents);
+            File f = new File(wkdir, m._name);
+            f.getParentFile().mkdirs();
+            writeContents(f, contents);
+            stat.record(m._name, f, id);
+            if (id.equals(m._ours)) {
+                stage.unstage(m._name);
+            } else {
+                stage.add(m._name, id);
+            }
+            hasConflict |= m._conflict;
+        }
+        stage.save();
+        stat.save();
         commit("Merged " + branchName
                 + " into " + _currCommit.getBranch() + ".");
         if (hasConflict) {
@@ -711,213 +934,120 @@ public class Gitlet implements Serializable {
         }
     }
 
-    /** @return b
-     * @param split s
-     * @param g g
-     * @param c c
-     * @param n n */
-    private boolean h7(HashMap<String, Blob> split, HashMap<String, Blob> g,
-                       HashMap<String, Blob> c, String n) {
-        return split.containsKey(n)
-                && c.containsKey(n)
-                && !g.containsKey(n)
-                && !split.get(n).getContent().equals(c.get(n).getContent());
-    }
-
-    /** @return b
-     * @param split s
-     * @param g g
-     * @param current c
-     * @param n n */
-    private boolean h6(HashMap<String, Blob> split, HashMap<String, Blob> g,
-                       HashMap<String, Blob> current, String n) {
-        return split.containsKey(n)
-                && !current.containsKey(n)
-                && g.containsKey(n)
-                && !split.get(n).getContent().equals(g.get(n).getContent());
-    }
-    /** @return b
-     * @param split s
-     * @param g g
-     * @param c c
-     * @param name n */
-    private boolean h5(HashMap<String, Blob> split, HashMap<String, Blob> g,
-                       HashMap<String, Blob> c, String name) {
-        return !split.containsKey(name) && c.containsKey(name)
-                && g.containsKey(name)
-                && !c.get(name).getContent().equals(g.get(name).getContent());
-    }
-    /** @return b
-     * @param s s
-     * @param given g
-     * @param c c
-     * @param name n */
-    private boolean h1(HashMap<String, Blob> s, HashMap<String, Blob> given,
-                       HashMap<String, Blob> c, String name) {
-        return s.containsKey(name)
-                && c.containsKey(name)
-                && !given.containsKey(name)
-                && s.get(name).getContent().equals(c.get(name).getContent());
-    }
-    /** @return b
-     * @param split s
-     * @param given g
-     * @param current c
-     * @param name n */
-    private boolean h2(HashMap<String, Blob> split, HashMap<String, Blob> given,
-                       HashMap<String, Blob> current, String name) {
-        return !split.containsKey(name)
-                && !current.containsKey(name)
-                && given.containsKey(name);
-    }
-
-    /** @return b
-     * @param split s
-     * @param g g
-     * @param c c
-     * @param n n */
-    private boolean h3(HashMap<String, Blob> split, HashMap<String, Blob> g,
-                       HashMap<String, Blob> c, String n) {
-        return split.containsKey(n)
-                && c.containsKey(n)
-                && g.containsKey(n)
-                && split.get(n).getContent().equals(c.get(n).getContent())
-                && !split.get(n).getContent().equals(g.get(n).getContent());
-    }
-    /** @return b
-     * @param split s
-     * @param g g
-     * @param c c
-     * @param n n */
-    private boolean h4(HashMap<String, Blob> split, HashMap<String, Blob> g,
-                       HashMap<String, Blob> c, String n) {
-        return split.containsKey(n)
-                && c.containsKey(n)
-                && g.containsKey(n)
-                && !c.get(n).getContent().equals(g.get(n).getContent())
-                && !c.get(n).getContent().equals(split.get(n).getContent())
-                && !g.get(n).getContent().equals(split.get(n).getContent());
-    }
-    /** @param s s
-     * @param c c
-     * @param g g
-     * @return hashSet */
-    private HashSet<String> allIn(HashMap<String, Blob> s,
-                                  HashMap<String, Blob> c,
-                                  HashMap<String, Blob> g) {
-        HashSet<String> allFileNames = new HashSet<>();
-        for (String filename : s.keySet()) {
-            allFileNames.add(filename);
-        }
-        for (String filename : g.keySet()) {
-            allFileNames.add(filename);
-        }
-        for (String filename : c.keySet()) {
-            allFileNames.add(filename);
-        }
-        return allFileNames;
-    }
-
-    /** @param curr c
-     * @param g g
-     * @param name n */
-    private void c1(HashMap<String, Blob> curr,
-                    HashMap<String, Blob> g, String name) {
-        String content = "<<<<<<< HEAD\n";
-        content += curr.get(name).getContent();
-        content += "=======\n";
-        content += g.get(name).getContent();
-        content += ">>>>>>>\n";
+    /** A file changed differently in both branches of a merge. */
+    private static class FileMerge {
+        /** The name of the file. */
+        private final String _name;
+        /** Its blob ID at the split point, or null if it was absent. */
+        private final String _base;
+        /** Its blob ID in the current branch, or null if deleted. */
+        private final String _ours;
+        /** Its blob ID in the given branch, or null if deleted. */
+        private final String _theirs;
+        /** The merged contents, once merged. */
+        private byte[] _contents;
+        /** True if the merged contents have conflicts. */
+        private boolean _conflict;
+
+        /** The file NAME, with versions BASE, OURS and THEIRS.
+         * @param name n
+         * @param base b
+         * @param ours o
+         * @param theirs t */
+        FileMerge(String name, String base, String ours, String theirs) {
+            _name = name;
+            _base = base;
+            _ours = ours;
+            _theirs = theirs;
+        }
+    }
 
-        writeContents(new File(name), content);
-        add(name);
+    /** Merge the contents of every file in MERGES, in parallel when
+     * there is more than one and more than one thread. A file in both
+     * branches is merged line by line, from an empty file if it was not
+     * at the split point, as long as every version is text; a file that
+     * is binary in any version, or deleted in one branch, conflicts as
+     * a whole, its versions written byte for byte. The object store is
+     * not safe to read from several threads, so reads take turns; only
+     * the merging itself runs at the same time.
+     * @param merges m */
+    private void mergeContents(List<FileMerge> merges) {
+        int threads = WorkTree.threads();
+        if (threads == 1 || merges.size() < 2) {
+            merges.forEach(this::mergeContents);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> merges.parallelStream()
+                        .forEach(this::mergeContents)).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            pool.shutdown();
+        }
     }
 
-    /** @param g g
-     * @param name n*/
-    private void c2(HashMap<String, Blob> g, String name) {
-        String content = "<<<<<<< HEAD\n";
-        content += "=======\n";
-        content += g.get(name).getContent();
-        content += ">>>>>>>\n";
-        writeContents(new File(name), content);
-        add(name);
+    /** Merge the contents of M.
+     * @param m m */
+    private void mergeContents(FileMerge m) {
+        byte[] base;
+        byte[] ours;
+        byte[] theirs;
+        synchronized (objects) {
+            base = m._base == null ? new byte[0] : objects.read(m._base);
+            ours = m._ours == null ? null : objects.read(m._ours);
+            theirs = m._theirs == null ? null : objects.read(m._theirs);
+        }
+        if (ours != null && theirs != null && LineMerge.isText(base)
+            && LineMerge.isText(ours) && LineMerge.isText(theirs)) {
+            LineMerge lm = LineMerge.merge(
+                new String(base, StandardCharsets.UTF_8),
+                new String(ours, StandardCharsets.UTF_8),
+                new String(theirs, StandardCharsets.UTF_8));
+            m._contents = lm.text().getBytes(StandardCharsets.UTF_8);
+            m._conflict = lm.conflicts() > 0;
+        } else {
+            m._contents = LineMerge.conflict(ours, theirs);
+            m._conflict = true;
+        }
     }
 
     /** @return the commit of the latest common ancestor of two given branches.
      * @param branch1 b1
      * @param branch2 b2 */
     Commit splitPoint(Commit branch1, Commit branch2) {
-        HashSet<String> branch1AllCommits = new HashSet<>();
-        String commitID1 = branch1.getCommitID();
-        while (commitID1 != null) {
-            branch1AllCommits.add(commitID1);
-            Commit currCommit = deserializeCommit(commitID1);
-            if (currCommit.getParent2ID() != null) {
-                branch1AllCommits.add(currCommit.getParent2ID());
-            }
-            commitID1 = currCommit.getParent1ID();
+        int pos = graph.mergeBase(graph.require(branch1.getCommitID()),
+                                  graph.require(branch2.getCommitID()));
+        if (pos == CommitGraph.NONE) {
+            return null;
         }
-        String commitID2 = branch2.getCommitID();
-        while (commitID2 != null) {
-            if (branch1AllCommits.contains(commitID2)) {
-                Commit c = deserializeCommit(commitID2);
-                return c;
-            }
-            Commit currCommit = deserializeCommit(commitID2);
-            if (currCommit.getParent2ID() != null
-                && branch1AllCommits.contains(currCommit.getParent2ID())) {
-                return deserializeCommit(currCommit.getParent2ID());
-            }
-            commitID2 = currCommit.getParent1ID();
-        }
-        return null;
+        return deserializeCommit(graph.id(pos));
     }
 
     /** Serialize the branch into branch directory.
      * @param branchName b
      * @param c c */
     void serializeBranch(String branchName, Commit c) {
-        File f = new File(branch, branchName);
-        writeContents(f, serialize(c));
+        refs.set(branchName, c.getCommitID());
     }
 
     /** Deserialize one commit.
      * @param commitFile c
      * @return commit */
     Commit deserializeCommit(File commitFile) {
-        return readObject(commitFile, Commit.class);
-    }
-
-    /** Deserialize the blob.
-     * @param blob b
-     * @return blob */
-    Blob deserializeBlob(File blob) {
-        return readObject(blob, Blob.class);
-    }
-
-    /** Clear all the files in the given directory.
-     * Used for commit clearing stages.
-     * @param directory d */
-    void clearDir(File directory) {
-        for (File f : directory.listFiles()) {
-            if (!f.isDirectory()) {
-                f.delete();
-            }
-        }
+        return Commit.read(commitFile).store(objects);
     }
 
-    /** Update HEAD file to be the current commit. */
+    /** Update HEAD file to name the branch of the current commit. */
     void updateHead() {
-        File head = new File(gitlet, "HEAD");
-        writeContents(head, serialize(getCurrCommit()));
+        refs.setHead(getCurrCommit().getBranch());
     }
 
-    /** Deserialize this commit.
+    /** Deserialize the head commit of the current branch.
      * @return head */
     Commit deserializeHead() {
-        File commitFile = new File(".gitlet/HEAD");
-        return readObject(commitFile, Commit.class);
+        return deserializeBranch(refs.head());
     }
 
     /** Convert a commit to a commit object.
@@ -925,13 +1055,32 @@ public class Gitlet implements Serializable {
      * @param commitID c
      * @return commit */
     public Commit deserializeCommit(String commitID) {
-        File f = new File(commit, commitID);
-        if (f.exists()) {
-            return readObject(f, Commit.class);
-        } else {
-            message("No commit with that id exists.");
-            throw new GitletException();
+        return Commit.decode(commitData(commitID), true).store(objects);
+    }
+
+    /** Read only the header of a commit: its ID, parents, branch, time
+     * stamp and message, without the file map.
+     * @param commitID c
+     * @return commit */
+    Commit deserializeCommitHeader(String commitID) {
+        return Commit.decode(commitData(commitID), false);
+    }
+
+    /** @return the contents of the file of the commit COMMITID, from the
+     * shared ObjectCache if it was read before.
+     * @param commitID c */
+    private byte[] commitData(String commitID) {
+        String key = "commit/" + commitID;
+        byte[] data = ObjectCache.SHARED.get(key);
+        if (data == null) {
+            File f = commits.file(commitID);
+            if (!f.exists()) {
+                throw error("No commit with that id exists.");
+            }
+            data = readContents(f);
+            ObjectCache.SHARED.put(key, data);
         }
+        return data;
     }
 
 }
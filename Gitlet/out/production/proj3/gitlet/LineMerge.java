@@ -0,0 +1,293 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** A three-way merge of text files, line by line. Both versions are
+ *  diffed against their common base with Diff, and the changes of each
+ *  are applied where the other left the base alone. Where both changed
+ *  the same or adjacent lines of the base, in different ways, the two
+ *  versions of just those lines, less any lines they both start or end
+ *  with, are written between conflict markers:
+ *
+ *      <<<<<<< HEAD
+ *      the lines of the current branch
+ *      =======
+ *      the lines of the given branch
+ *      >>>>>>>
+ *
+ *  Lines keep their line terminators, so a change to the last line of
+ *  a file that only adds or removes its final newline is a change too.
+ *  Only text is merged this way: contents that hold a NUL byte or are
+ *  not valid UTF-8 would not survive being decoded into lines, so such
+ *  files conflict as a whole (see conflict), untouched.
+ *  Time and memory are linear in the sizes of the files, plus the cost
+ *  of the diffs.
+ *  @author Mengzhu Sun
+ */
+class LineMerge {
+
+    /** The start of a conflict. */
+    static final String OURS = "<<<<<<< HEAD\n";
+    /** The separator of the two sides of a conflict. */
+    static final String SEPARATOR = "=======\n";
+    /** The end of a conflict. */
+    static final String END = ">>>>>>>\n";
+
+    /** The merged text. */
+    private final StringBuilder _out = new StringBuilder();
+    /** The number of conflicts. */
+    private int _conflicts;
+
+    /** The lines of the base. */
+    private final String[] _base;
+    /** The lines of the current branch. */
+    private final String[] _ours;
+    /** The lines of the given branch. */
+    private final String[] _theirs;
+
+    /** A merge of OURS and THEIRS from BASE.
+     * @param base b
+     * @param ours o
+     * @param theirs t */
+    private LineMerge(String base, String ours, String theirs) {
+        _base = split(base);
+        _ours = split(ours);
+        _theirs = split(theirs);
+    }
+
+    /** @return the merge of OURS and THEIRS, two versions of the text
+     * BASE.
+     * @param base b
+     * @param ours o
+     * @param theirs t */
+    static LineMerge merge(String base, String ours, String theirs) {
+        LineMerge m = new LineMerge(base, ours, theirs);
+        m.run();
+        return m;
+    }
+
+    /** @return the merged text, with conflict markers if there are
+     * conflicts. */
+    String text() {
+        return _out.toString();
+    }
+
+    /** @return the number of conflicts. */
+    int conflicts() {
+        return _conflicts;
+    }
+
+    /** @return true if DATA can be merged as text: it has no NUL byte
+     * and is valid UTF-8, so decoding it and encoding the result gives
+     * back exactly the same bytes.
+     * @param data d */
+    static boolean isText(byte[] data) {
+        for (byte b : data) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(data));
+            return true;
+        } catch (CharacterCodingException excp) {
+            return false;
+        }
+    }
+
+    /** @return the whole-file conflict between OURS and THEIRS, either
+     * of which is null if that side deleted the file, built from their
+     * bytes as they are, with a newline added after a side that does not
+     * end with one so that each marker starts a line of its own.
+     * @param ours o
+     * @param theirs t */
+    static byte[] conflict(byte[] ours, byte[] theirs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(OURS.getBytes(StandardCharsets.UTF_8));
+        side(out, ours);
+        out.writeBytes(SEPARATOR.getBytes(StandardCharsets.UTF_8));
+        side(out, theirs);
+        out.writeBytes(END.getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    /** Write CONTENTS, if not null, to OUT as one side of a whole-file
+     *  conflict, ending it with a newline if it does not already.
+     * @param out o
+     * @param contents c */
+    private static void side(ByteArrayOutputStream out, byte[] contents) {
+        if (contents != null && contents.length > 0) {
+            out.writeBytes(contents);
+            if (contents[contents.length - 1] != '\n') {
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Merge the lines. */
+    private void run() {
+        HashMap<String, Integer> ids =
+            new HashMap<>(2 * (_base.length + _ours.length + _theirs.length));
+        int[] base = number(_base, ids);
+        List<int[]> ours = Diff.lines(base, number(_ours, ids));
+        List<int[]> theirs = Diff.lines(base, number(_theirs, ids));
+        int done = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ours.size() || j < theirs.size()) {
+            int start = Math.min(
+                i < ours.size() ? ours.get(i)[0] : Integer.MAX_VALUE,
+                j < theirs.size() ? theirs.get(j)[0] : Integer.MAX_VALUE);
+            int end = start;
+            int i0 = i;
+            int j0 = j;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                if (i < ours.size() && ours.get(i)[0] <= end) {
+                    end = Math.max(end, ours.get(i)[1]);
+                    i += 1;
+                    grew = true;
+                }
+                if (j < theirs.size() && theirs.get(j)[0] <= end) {
+                    end = Math.max(end, theirs.get(j)[1]);
+                    j += 1;
+                    grew = true;
+                }
+            }
+            append(_base, done, start);
+            int[] o = side(ours, i0, i, start, end);
+            int[] t = side(theirs, j0, j, start, end);
+            if (i == i0) {
+                append(_theirs, t[0], t[1]);
+            } else if (j == j0 || same(_ours, o, _theirs, t)) {
+                append(_ours, o[0], o[1]);
+            } else {
+                conflict(o, t);
+            }
+            done = end;
+        }
+        append(_base, done, _base.length);
+    }
+
+    /** Write the conflict between lines O of ours and lines T of theirs,
+     *  which differ, leaving the lines both begin or end with outside of
+     *  the markers.
+     * @param o o
+     * @param t t */
+    private void conflict(int[] o, int[] t) {
+        int head = 0;
+        while (o[0] + head < o[1] && t[0] + head < t[1]
+               && _ours[o[0] + head].equals(_theirs[t[0] + head])) {
+            head += 1;
+        }
+        int tail = 0;
+        while (o[1] - tail > o[0] + head && t[1] - tail > t[0] + head
+               && _ours[o[1] - tail - 1].equals(_theirs[t[1] - tail - 1])) {
+            tail += 1;
+        }
+        _conflicts += 1;
+        append(_ours, o[0], o[0] + head);
+        _out.append(OURS);
+        append(_ours, o[0] + head, o[1] - tail);
+        terminate();
+        _out.append(SEPARATOR);
+        append(_theirs, t[0] + head, t[1] - tail);
+        terminate();
+        _out.append(END);
+        append(_ours, o[1] - tail, o[1]);
+    }
+
+    /** @return the range of lines of one side that stands for lines
+     * [START, END) of the base, given that HUNKS [FROM, TO) are all the
+     * hunks of the diff of that side that fall within it.
+     * @param hunks h
+     * @param from f
+     * @param to t
+     * @param start s
+     * @param end e */
+    private static int[] side(List<int[]> hunks, int from, int to,
+                              int start, int end) {
+        if (from == to) {
+            return new int[] {start, end};
+        }
+        int[] first = hunks.get(from);
+        int[] last = hunks.get(to - 1);
+        return new int[] {first[2] - (first[0] - start),
+                          last[3] + (end - last[1])};
+    }
+
+    /** @return true if lines RA of A are the same as lines RB of B.
+     * @param a a
+     * @param ra ra
+     * @param b b
+     * @param rb rb */
+    private static boolean same(String[] a, int[] ra, String[] b, int[] rb) {
+        if (ra[1] - ra[0] != rb[1] - rb[0]) {
+            return false;
+        }
+        for (int k = 0; k < ra[1] - ra[0]; k += 1) {
+            if (!a[ra[0] + k].equals(b[rb[0] + k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Append LINES [FROM, TO) to the output.
+     * @param lines l
+     * @param from f
+     * @param to t */
+    private void append(String[] lines, int from, int to) {
+        for (int k = from; k < to; k += 1) {
+            _out.append(lines[k]);
+        }
+    }
+
+    /** End the output with a newline if it does not already, so that a
+     *  marker that follows starts a line of its own. */
+    private void terminate() {
+        int n = _out.length();
+        if (n > 0 && _out.charAt(n - 1) != '\n') {
+            _out.append('\n');
+        }
+    }
+
+    /** @return the lines of TEXT, each with its terminating newline if it
+     * has one.
+     * @param text t */
+    static String[] split(String text) {
+        ArrayList<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int nl = text.indexOf('\n', start);
+            int end = nl < 0 ? text.length() : nl + 1;
+            lines.add(text.substring(start, end));
+            start = end;
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /** @return the number of each of LINES, numbering each distinct line
+     * the first time it is seen in IDS.
+     * @param lines l
+     * @param ids i */
+    private static int[] number(String[] lines, HashMap<String, Integer> ids) {
+        int[] result = new int[lines.length];
+        for (int k = 0; k < lines.length; k += 1) {
+            Integer id = ids.putIfAbsent(lines[k], ids.size());
+            result[k] = id == null ? ids.size() - 1 : id;
+        }
+        return result;
+    }
+}
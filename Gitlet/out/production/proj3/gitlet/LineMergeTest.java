@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of LineMerge.
+ *  @author Mengzhu Sun
+ */
+public class LineMergeTest {
+
+    /** @return the merged text of OURS and THEIRS from BASE, checking
+     * that it has no conflicts.
+     * @param base b
+     * @param ours o
+     * @param theirs t */
+    private static String clean(String base, String ours, String theirs) {
+        LineMerge m = LineMerge.merge(base, ours, theirs);
+        assertEquals(m.text(), 0, m.conflicts());
+        return m.text();
+    }
+
+    /** @return N random lines, some of them repeated, the last without
+     * a newline one time in four.
+     * @param rand r
+     * @param n n */
+    private static String text(Random rand, int n) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < n; k += 1) {
+            result.append("line ").append(rand.nextInt(n / 2 + 1));
+            if (k < n - 1 || rand.nextInt(4) != 0) {
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /** A change on one side only is taken as it is. */
+    @Test
+    public void oneSideChanged() {
+        Random rand = new Random(23);
+        for (int trial = 0; trial < 200; trial += 1) {
+            String a = text(rand, rand.nextInt(40));
+            String b = text(rand, rand.nextInt(40));
+            assertEquals(b, clean(a, b, a));
+            assertEquals(b, clean(a, a, b));
+            assertEquals(b, clean(a, b, b));
+        }
+    }
+
+    /** Changes to lines apart from each other are both kept. */
+    @Test
+    public void separateChanges() {
+        String base = "a\nb\nc\nd\ne\n";
+        assertEquals("A\nb\nc\nd\nE\n",
+                     clean(base, "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n"));
+        assertEquals("a\nb\nc\nd\ne\nf",
+                     clean(base, "a\nb\nc\nd\ne\n", base + "f"));
+    }
+
+    /** Lines changed differently on both sides go between markers. */
+    @Test
+    public void conflict() {
+        LineMerge m = LineMerge.merge("a\nb\nc\n", "a\nX\nc\n", "a\nY\nc\n");
+        assertEquals(1, m.conflicts());
+        assertEquals("a\n" + LineMerge.OURS + "X\n" + LineMerge.SEPARATOR
+                     + "Y\n" + LineMerge.END + "c\n", m.text());
+    }
+
+    /** Each marker starts a line of its own when a side of a conflict
+     *  ends the file without a newline. */
+    @Test
+    public void conflictWithoutNewline() {
+        LineMerge m = LineMerge.merge("a\nb", "a\nX", "a\nY");
+        assertEquals(1, m.conflicts());
+        assertEquals("a\n" + LineMerge.OURS + "X\n" + LineMerge.SEPARATOR
+                     + "Y\n" + LineMerge.END, m.text());
+    }
+
+    /** Text is anything in UTF-8 without a NUL byte. */
+    @Test
+    public void isText() {
+        assertTrue(LineMerge.isText(new byte[0]));
+        assertTrue(LineMerge.isText(
+            "caf\u00e9 \u2603\n".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(LineMerge.isText(new byte[] {'a', 0, 'b'}));
+        assertFalse(LineMerge.isText(new byte[] {'a', (byte) 0xe9, '\n'}));
+        assertFalse(LineMerge.isText(new byte[] {(byte) 0xc3}));
+    }
+
+    /** A whole-file conflict keeps both sides byte for byte, ending a
+     *  side with a newline if it has none, and leaves a deleted side
+     *  empty. */
+    @Test
+    public void wholeFileConflict() {
+        byte[] ours = {'a', 0, (byte) 0xff};
+        byte[] theirs = {'b', 0, '\n'};
+        assertArrayEquals(concat(LineMerge.OURS, ours, "\n",
+                                 LineMerge.SEPARATOR, theirs, LineMerge.END),
+                          LineMerge.conflict(ours, theirs));
+        assertArrayEquals(concat(LineMerge.OURS, LineMerge.SEPARATOR,
+                                 theirs, LineMerge.END),
+                          LineMerge.conflict(null, theirs));
+    }
+
+    /** @return PARTS, Strings in UTF-8 and byte arrays, one after another.
+     * @param parts p */
+    private static byte[] concat(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            if (part instanceof String) {
+                String text = (String) part;
+                out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.writeBytes((byte[]) part);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of merge, and of the split points it finds.
+ *  @author Mengzhu Sun
+ */
+public class MergeTest {
+
+    /** Make a commit of REPO with MESSAGE holding the file NAME with
+     *  CONTENTS.
+     * @param repo r
+     * @param name n
+     * @param contents c
+     * @param message m */
+    private static void commit(TestRepo repo, String name, Object contents,
+                               String message) {
+        if (contents instanceof String) {
+            repo.write(name, (String) contents);
+        } else {
+            repo.write(name, (byte[]) contents);
+        }
+        repo.run("add", name);
+        repo.run("commit", message);
+    }
+
+    /** @return the ID of the commit of REPO with MESSAGE.
+     * @param repo r
+     * @param message m */
+    private static String find(TestRepo repo, String message) {
+        return repo.run("find", message).trim();
+    }
+
+    /** Lines changed apart in a file on both branches are merged. */
+    @Test
+    public void mergeLines() {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            commit(repo, "f.txt", "a\nb\nc\nd\ne\n", "base");
+            repo.run("branch", "other");
+            commit(repo, "f.txt", "A\nb\nc\nd\ne\n", "ours");
+            repo.run("checkout", "other");
+            commit(repo, "f.txt", "a\nb\nc\nd\nE", "theirs");
+            repo.run("checkout", "master");
+            assertEquals("", repo.run("merge", "other"));
+            assertEquals("A\nb\nc\nd\nE", repo.readString("f.txt"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** A file that is not text, changed on both branches, conflicts as a
+     *  whole with the bytes of both sides unchanged. */
+    @Test
+    public void mergeBinary() {
+        TestRepo repo = new TestRepo();
+        byte[] ours = {'a', 0, 'o', (byte) 0xff};
+        byte[] theirs = {'a', 0, 't', '\n'};
+        try {
+            repo.run("init");
+            commit(repo, "f.bin", new byte[] {'a', 0, '\n'}, "base");
+            repo.run("branch", "other");
+            commit(repo, "f.bin", ours, "ours");
+            repo.run("checkout", "other");
+            commit(repo, "f.bin", theirs, "theirs");
+            repo.run("checkout", "master");
+            assertEquals("Encountered a merge conflict.\n",
+                         repo.run("merge", "other"));
+            assertArrayEquals(LineMerge.conflict(ours, theirs),
+                              repo.read("f.bin"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** After criss-cross merges, the two branches have two best common
+     *  ancestors, neither an ancestor of the other, and merging them
+     *  again keeps the changes of both. */
+    @Test
+    public void crissCross() {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            commit(repo, "f.txt", "0\n", "base");
+            repo.run("branch", "b");
+            commit(repo, "a.txt", "a\n", "A1");
+            repo.run("branch", "a1");
+            repo.run("checkout", "b");
+            commit(repo, "b.txt", "b\n", "B1");
+            repo.run("branch", "b1");
+            repo.run("merge", "a1");
+            repo.run("checkout", "master");
+            repo.run("merge", "b1");
+            commit(repo, "f.txt", "0\nx\n", "M1x");
+
+            CommitGraph graph =
+                new CommitGraph(new File(repo.dir(), ".gitlet"));
+            int a1 = graph.require(find(repo, "A1"));
+            int b1 = graph.require(find(repo, "B1"));
+            int master = graph.require(find(repo, "M1x"));
+            int b = graph.require(find(repo, "Merged a1 into b."));
+            assertEquals(new HashSet<>(Arrays.asList(a1, b1)),
+                         new HashSet<>(graph.mergeBases(master, b)));
+            int base = graph.mergeBase(master, b);
+            assertTrue(base == a1 || base == b1);
+            assertEquals(graph.mergeBases(master, b),
+                         graph.mergeBases(b, master));
+
+            repo.run("merge", "b");
+            assertEquals("0\nx\n", repo.readString("f.txt"));
+            assertEquals("a\n", repo.readString("a.txt"));
+            assertEquals("b\n", repo.readString("b.txt"));
+        } finally {
+            repo.delete();
+        }
+    }
+}
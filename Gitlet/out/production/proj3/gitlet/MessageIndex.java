@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** The index of commit messages kept in .gitlet/message-index, which
+ *  lets find answer without reading every commit. For each distinct
+ *  message there is a file named by the SHA-1 of the message listing
+ *  the IDs of its commits, one per line; for each word there is a file
+ *  named by the SHA-1 of the word listing the commits whose messages
+ *  contain it. Both are FanOutDirs, and a commit only appends its ID to
+ *  the files of its message and words.
+ *
+ *  Words are the runs of letters and digits of a message, in lower case.
+ *  The index is built from the commit files the first time it is needed
+ *  in a repository that does not have one.
+ *  @author Mengzhu Sun
+ */
+class MessageIndex {
+
+    /** The index directory. */
+    private final File _dir;
+    /** The commits of each message. */
+    private final FanOutDir _messages;
+    /** The commits of each word. */
+    private final FanOutDir _words;
+    /** The commit files, read to build the index. */
+    private final FanOutDir _commits;
+
+    /** The index of the repository whose .gitlet directory is GITLET.
+     * @param gitlet g */
+    MessageIndex(File gitlet) {
+        _dir = new File(gitlet, "message-index");
+        _messages = new FanOutDir(new File(_dir, "messages"));
+        _words = new FanOutDir(new File(_dir, "words"));
+        _commits = new FanOutDir(new File(gitlet, "commit"));
+    }
+
+    /** Index the message of the commit C.
+     * @param c c */
+    void add(Commit c) {
+        if (!_dir.isDirectory()) {
+            build();
+            return;
+        }
+        add(_dir, c);
+    }
+
+    /** @return the IDs of the commits whose message is MESSAGE, in the
+     * order they were indexed.
+     * @param message m */
+    List<String> find(String message) {
+        load();
+        return read(_messages.file(sha1(message)));
+    }
+
+    /** @return the IDs of the commits whose messages contain every word
+     * of QUERY, in the order they were indexed.
+     * @param query q */
+    List<String> search(String query) {
+        load();
+        LinkedHashSet<String> result = null;
+        for (String word : words(query)) {
+            List<String> ids = read(_words.file(sha1(word)));
+            if (result == null) {
+                result = new LinkedHashSet<>(ids);
+            } else {
+                result.retainAll(ids);
+            }
+        }
+        return result == null ? new ArrayList<>() : new ArrayList<>(result);
+    }
+
+    /** @return the distinct words of MESSAGE, in lower case.
+     * @param message m */
+    static TreeSet<String> words(String message) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String w : message.toLowerCase(Locale.ROOT)
+                 .split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) {
+                result.add(w);
+            }
+        }
+        return result;
+    }
+
+    /** Build the index if there is none yet. */
+    private void load() {
+        if (!_dir.isDirectory()) {
+            build();
+        }
+    }
+
+    /** Write the index afresh from the commit files, in a temporary
+     *  directory that is renamed into place when it is complete. */
+    private void build() {
+        File tmp = new File(_dir.getPath() + ".tmp");
+        deleteAll(tmp);
+        tmp.mkdir();
+        for (String id : _commits.ids()) {
+            add(tmp, Commit.readHeader(_commits.file(id)));
+        }
+        if (!tmp.renameTo(_dir)) {
+            throw error("Cannot write the message index.");
+        }
+    }
+
+    /** Add the commit C to the index in DIR.
+     * @param dir d
+     * @param c c */
+    private static void add(File dir, Commit c) {
+        String line = c.getCommitID() + "\n";
+        append(new FanOutDir(new File(dir, "messages"))
+               .create(sha1(c.getLogMsg())), line);
+        FanOutDir words = new FanOutDir(new File(dir, "words"));
+        for (String word : words(c.getLogMsg())) {
+            append(words.create(sha1(word)), line);
+        }
+    }
+
+    /** @return the IDs listed in F, or none if there is no F.
+     * @param f f */
+    private static List<String> read(File f) {
+        List<String> result = new ArrayList<>();
+        if (f.isFile()) {
+            for (String id : readContentsAsString(f).split("\n")) {
+                if (!id.isEmpty()) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Append LINE to F, creating it if need be.
+     * @param f f
+     * @param line l */
+    private static void append(File f, String line) {
+        try {
+            Files.write(f.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests that repositories written by the first version of gitlet, which
+ *  serialized whole commits and blobs with their contents, can still be
+ *  used and migrated. The repository in testing/baseline-repo was made
+ *  by that version with
+ *
+ *      init; echo hello > a.txt; echo bee > b.txt; add a.txt; add b.txt
+ *      commit one; branch other; echo hello2 > a.txt; add a.txt
+ *      commit two; echo staged > s.txt; add s.txt; rm b.txt
+ *
+ *  @author Mengzhu Sun
+ */
+public class MigrationTest {
+
+    /** The repository written by the first version. */
+    static final File BASELINE = new File("../testing/baseline-repo");
+
+    /** @return a copy of the baseline repository. */
+    private static TestRepo baseline() {
+        assertTrue("missing " + BASELINE, BASELINE.isDirectory());
+        TestRepo repo = new TestRepo();
+        repo.copyFrom(BASELINE);
+        return repo;
+    }
+
+    /** The expected status of the baseline repository. */
+    private static final String STATUS = "=== Branches ===\n*master\nother\n"
+        + " \n=== Staged Files ===\ns.txt\n \n=== Removed Files ===\nb.txt\n";
+
+    /** Check that REPO has the history and files of the baseline.
+     * @param repo r */
+    private static void checkBaseline(TestRepo repo) {
+        String log = repo.run("log");
+        assertTrue(log, log.matches("(?s).*two\n.*one\n.*initial commit\n.*"));
+        assertTrue(repo.run("status").startsWith(STATUS));
+        repo.write("a.txt", "changed\n");
+        repo.run("checkout", "--", "a.txt");
+        assertEquals("hello2\n", repo.readString("a.txt"));
+    }
+
+    /** The baseline repository can be read without migrating it. */
+    @Test
+    public void readBaseline() {
+        TestRepo repo = baseline();
+        try {
+            checkBaseline(repo);
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** Decoding the records of the baseline writes nothing, neither to
+     *  its store nor to that of the working directory; store() writes
+     *  the contents of its files to the store it is given, under the
+     *  blob IDs the decoded commits name. */
+    @Test
+    public void decodeWithoutSideEffects() {
+        TestRepo repo = baseline();
+        try {
+            File gitlet = new File(repo.dir(), ".gitlet");
+            File objects = new File(gitlet, "objects");
+            File[] commits = new File(gitlet, "commit").listFiles();
+            assertEquals(3, commits.length);
+            ArrayList<Commit> decoded = new ArrayList<>();
+            for (File f : commits) {
+                decoded.add(Commit.decode(Utils.readContents(f), true));
+            }
+            Blob b = Blob.read(new File(gitlet, "addStaging/s.txt"));
+            assertEquals("s.txt", b.getName());
+            assertFalse(objects.exists());
+            assertFalse(new File(".gitlet").exists());
+
+            ObjectStore store = new ObjectStore(gitlet);
+            for (Commit c : decoded) {
+                c.store(store);
+                for (String id : c.getMap().values()) {
+                    assertEquals(id, Utils.sha1(store.read(id)));
+                }
+            }
+            assertFalse(store.contains(b.getBlobID()));
+            b.store(store);
+            assertEquals("staged\n", new String(store.read(b.getBlobID()),
+                                                StandardCharsets.UTF_8));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** Migrating the baseline repository rewrites every record in the
+     *  current formats and keeps its history, stage and contents. */
+    @Test
+    public void migrateBaseline() {
+        TestRepo repo = baseline();
+        try {
+            assertEquals("", repo.run("migrate"));
+            assertTrue(repo.exists(".gitlet/stage"));
+            assertFalse(repo.exists(".gitlet/addStaging"));
+            assertFalse(repo.exists(".gitlet/removeStaging"));
+            assertTrue(repo.readString(".gitlet/HEAD").startsWith("ref: "));
+            checkBaseline(repo);
+
+            repo.run("commit", "three");
+            assertTrue(repo.run("status").startsWith(
+                "=== Branches ===\n*master\nother\n \n=== Staged Files ===\n"
+                + " \n=== Removed Files ===\n \n"));
+            repo.run("checkout", "other");
+            assertEquals("hello\n", repo.readString("a.txt"));
+            assertEquals("bee\n", repo.readString("b.txt"));
+            assertFalse(repo.exists("s.txt"));
+        } finally {
+            repo.delete();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A bounded cache of the raw contents of immutable records, kept for
+ *  the life of the process: objects from the ObjectStore by their IDs
+ *  and commit files by their commit IDs. Neither can change once
+ *  written, so entries never go stale, and under a Daemon they serve
+ *  every later command too.
+ *
+ *  Entries are weighed by their size in bytes and the least recently
+ *  used are dropped once the total passes the capacity, which is the
+ *  gitlet.cache property (default 64 MiB). Records larger than an
+ *  eighth of that are not kept. The contents are only softly held, so
+ *  the garbage collector may also drop them when memory runs short.
+ *  Callers must not modify the arrays they get.
+ *  @author Mengzhu Sun
+ */
+class ObjectCache {
+
+    /** The cache shared by everything in this process. */
+    static final ObjectCache SHARED =
+        new ObjectCache(Long.getLong("gitlet.cache", 64L << 20));
+
+    /** The most bytes to keep. */
+    private final long _capacity;
+    /** The bytes kept now, counting entries not yet found cleared. */
+    private long _weight;
+    /** The entries by key, least recently used first. */
+    private final LinkedHashMap<String, Entry> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Entries whose contents the garbage collector dropped. */
+    private final ReferenceQueue<byte[]> _cleared = new ReferenceQueue<>();
+    /** The number of lookups that found their record. */
+    private long _hits;
+    /** The number of lookups that did not. */
+    private long _misses;
+
+    /** One cached record. */
+    private static class Entry extends SoftReference<byte[]> {
+        /** The key. */
+        private final String _key;
+        /** The size of the record. */
+        private final int _size;
+
+        /** An entry for DATA under KEY, enqueued on QUEUE when cleared.
+         * @param key k
+         * @param data d
+         * @param queue q */
+        Entry(String key, byte[] data, ReferenceQueue<byte[]> queue) {
+            super(data, queue);
+            _key = key;
+            _size = data.length;
+        }
+    }
+
+    /** A cache of at most CAPACITY bytes.
+     * @param capacity c */
+    ObjectCache(long capacity) {
+        _capacity = capacity;
+    }
+
+    /** @return the record under KEY, or null if it is not cached.
+     * @param key k */
+    synchronized byte[] get(String key) {
+        purge();
+        Entry e = _entries.get(key);
+        byte[] data = e == null ? null : e.get();
+        if (data == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return data;
+    }
+
+    /** Keep DATA under KEY, unless it is too large.
+     * @param key k
+     * @param data d */
+    synchronized void put(String key, byte[] data) {
+        purge();
+        if (data.length > _capacity / 8) {
+            return;
+        }
+        Entry old = _entries.put(key, new Entry(key, data, _cleared));
+        if (old != null) {
+            _weight -= old._size;
+        }
+        _weight += data.length;
+        Iterator<Entry> eldest = _entries.values().iterator();
+        while (_weight > _capacity && eldest.hasNext()) {
+            _weight -= eldest.next()._size;
+            eldest.remove();
+        }
+    }
+
+    /** @return the number of lookups that found their record. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** @return the number of lookups that did not. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** @return the bytes kept now. */
+    synchronized long weight() {
+        return _weight;
+    }
+
+    /** Forget the entries the garbage collector has cleared. */
+    private void purge() {
+        for (Object ref = _cleared.poll(); ref != null;
+             ref = _cleared.poll()) {
+            Entry e = (Entry) ref;
+            if (_entries.get(e._key) == e) {
+                _entries.remove(e._key);
+                _weight -= e._size;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** The content-addressed object store kept in .gitlet/objects.
+ *  Every object is a file named by the SHA-1 of its contents, so the
+ *  same contents are only ever stored once no matter how many commits
+ *  or branches refer to them. Objects start out loose, one file each
+ *  in a FanOutDir, and are consolidated into a single Pack by repack().
+ *  Files are streamed in and out of loose objects through a fixed
+ *  buffer, so their size is not limited by memory; objects larger than
+ *  PACK_LIMIT are never packed for the same reason.
+ *  @author Mengzhu Sun
+ */
+class ObjectStore {
+
+    /** The largest object that repack() puts in the pack. */
+    static final long PACK_LIMIT = 1 << 24;
+
+    /** The object directory. */
+    private final File _dir;
+
+    /** The loose objects. */
+    private final FanOutDir _loose;
+
+    /** The pack of this store, which may not have been written yet. */
+    private final Pack _pack;
+
+    /** A store rooted at the objects directory of the repository
+     *  whose .gitlet directory is GITLET. */
+    ObjectStore(File gitlet) {
+        _dir = new File(gitlet, "objects");
+        _loose = new FanOutDir(_dir);
+        _pack = new Pack(new File(_dir, "pack"));
+    }
+
+    /** @return the store of the repository in the working directory. */
+    static ObjectStore local() {
+        File wkdir = new File(System.getProperty("user.dir"));
+        return new ObjectStore(new File(wkdir, ".gitlet"));
+    }
+
+    /** @return the objects directory. */
+    File getDir() {
+        return _dir;
+    }
+
+    /** @return true if an object named ID is stored.
+     * @param id id */
+    boolean contains(String id) {
+        return _loose.contains(id) || _pack.contains(id);
+    }
+
+    /** Store CONTENTS, unless an identical object is already there,
+     *  through a temporary file that is renamed into place, so a write
+     *  cut short never leaves a damaged object under a valid ID.
+     * @param contents c
+     * @return the id of the object. */
+    String write(byte[] contents) {
+        String id = sha1(contents);
+        if (!contains(id)) {
+            File f = _loose.create(id);
+            try {
+                Path tmp = Files.createTempFile(f.getParentFile().toPath(),
+                                                "tmp", null);
+                Files.write(tmp, contents);
+                Files.move(tmp, f.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return id;
+    }
+
+    /** Store the contents of FILE, hashing them as they are copied.
+     * @param file f
+     * @return the id of the object. */
+    String writeFile(File file) {
+        try {
+            Path tmp = Files.createTempFile(_dir.toPath(), "tmp", null);
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            try (InputStream in = Files.newInputStream(file.toPath());
+                 OutputStream out = new DigestOutputStream(
+                         Files.newOutputStream(tmp), md)) {
+                byte[] buf = new byte[BUFFER_SIZE];
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    out.write(buf, 0, n);
+                }
+            }
+            String id = bytesToHex(md.digest(), 0, UID_BYTES);
+            if (contains(id)) {
+                Files.delete(tmp);
+            } else {
+                Files.move(tmp, _loose.create(id).toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Write the contents of the object ID to the file DEST, replacing
+     *  it. The object is found first, so DEST is left alone if it is
+     *  missing, and the bytes go to a temporary file beside DEST that is
+     *  then renamed over it, so a copy cut short never leaves DEST half
+     *  written. A loose object is copied with FileChannel.transferTo,
+     *  which lets the kernel move the bytes without copying them through
+     *  the heap; a packed one is inflated out of the mapped pack. Missing
+     *  parent directories of DEST are created.
+     * @param id id
+     * @param dest d */
+    void copyTo(String id, File dest) {
+        File f = _loose.file(id);
+        boolean loose = f.isFile();
+        if (!loose && !_pack.contains(id)) {
+            throw error("Missing object %s.", id);
+        }
+        File parent = dest.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        Path tmp = new File(parent, "." + dest.getName() + "."
+                            + Long.toHexString(System.nanoTime())
+                            + ".tmp").toPath();
+        try {
+            try (FileChannel out = FileChannel.open(tmp,
+                     StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE)) {
+                if (!loose) {
+                    if (!_pack.copyTo(id, out)) {
+                        throw error("Missing object %s.", id);
+                    }
+                } else {
+                    try (FileChannel in = FileChannel.open(f.toPath(),
+                             StandardOpenOption.READ)) {
+                        long size = in.size();
+                        for (long n = 0; n < size; ) {
+                            n += in.transferTo(n, size - n, out);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, dest.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            tmp.toFile().delete();
+        }
+    }
+
+    /** Store the object ID of SOURCE here, unless it already is. A copy
+     *  cut short never leaves a damaged object behind, since copyTo
+     *  renames the finished copy into place.
+     * @param source s
+     * @param id id */
+    void copyFrom(ObjectStore source, String id) {
+        if (!contains(id)) {
+            source.copyTo(id, _loose.create(id));
+        }
+    }
+
+    /** @return the contents of the object ID, which must not be
+     * modified, since they may be shared through the ObjectCache.
+     * @param id id */
+    byte[] read(String id) {
+        byte[] contents = ObjectCache.SHARED.get(id);
+        if (contents != null) {
+            return contents;
+        }
+        File f = _loose.file(id);
+        if (f.isFile()) {
+            contents = readContents(f);
+        } else {
+            contents = _pack.read(id);
+            if (contents == null) {
+                throw error("Missing object %s.", id);
+            }
+        }
+        ObjectCache.SHARED.put(id, contents);
+        return contents;
+    }
+
+    /** @return the IDs of the loose objects. */
+    Iterable<String> looseIDs() {
+        return _loose.ids();
+    }
+
+    /** Move loose objects written by earlier versions into the
+     *  subdirectories of the FanOutDir. */
+    void migrate() {
+        _loose.migrate();
+    }
+
+    /** Consolidate every object, loose or already packed, into a fresh
+     *  pack and delete the loose copies, once Pack.write has read them
+     *  back from the pack. Objects larger than PACK_LIMIT stay loose.
+     *  CHAINS lists the versions of each file newest first, so that
+     *  older versions are stored as deltas against newer ones.
+     * @param chains c */
+    void repack(List<List<String>> chains) {
+        List<String> loose = new ArrayList<>();
+        for (String id : looseIDs()) {
+            if (_loose.file(id).length() <= PACK_LIMIT) {
+                loose.add(id);
+            }
+        }
+        LinkedHashSet<String> all = new LinkedHashSet<>(_pack.ids());
+        all.addAll(loose);
+        Pack.write(_pack.getDir(), this, new ArrayList<>(all), chains);
+        _pack.close();
+        for (String id : loose) {
+            _loose.file(id).delete();
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import static gitlet.Utils.*;
+
+/** A packfile: many objects consolidated into one file, each compressed
+ *  with Deflater and older versions stored as deltas against a newer one.
+ *  pack-H.pack holds the entries; pack-H.idx holds the sorted object IDs
+ *  with the offset of each entry, so an object is found by binary search
+ *  in the mapped index and inflated straight out of the mapped pack.
+ *
+ *  H is the SHA-1 of the pack file, so a new pack never overwrites the
+ *  files of the one in use. The file current names the pack in use and
+ *  is replaced in one rename once the new pack has been read back, so a
+ *  reader sees either the old pair or the new, never one of each. Older
+ *  versions wrote objects.pack and objects.idx; they are used while
+ *  there is no file current. Both files are mapped, which limits each
+ *  to 2 GiB.
+ *
+ *  An entry is a type byte, the inflated length as a varint, the raw base
+ *  ID for a delta, the deflated length as a varint and the deflated bytes.
+ *  The index is a header, a 256-entry fan-out table counting the IDs whose
+ *  first byte is at most each value, the raw IDs and then their offsets.
+ *  @author Mengzhu Sun
+ */
+class Pack {
+
+    /** Magic number of the pack file. */
+    private static final int PACK_MAGIC = 0x4750414b;
+    /** Magic number of the index file. */
+    private static final int IDX_MAGIC = 0x47494458;
+    /** Format version of both files. */
+    private static final int VERSION = 1;
+    /** Length of either header: magic, version and object count. */
+    private static final int HEADER = 12;
+    /** Entries of the fan-out table. */
+    private static final int FANOUT = 256;
+    /** The largest file that can be mapped. */
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+    /** The name of the pack written by older versions. */
+    private static final String LEGACY = "objects";
+
+    /** Entry type of an object stored whole. */
+    static final int FULL = 1;
+    /** Entry type of an object stored as a delta. */
+    static final int DELTA = 2;
+    /** The longest chain of deltas a read may have to resolve. */
+    static final int MAX_DEPTH = 10;
+
+    /** The directory holding the pack. */
+    private final File _dir;
+    /** The file naming the pack in use. */
+    private final File _current;
+    /** The name of this pack, or null to use the one named by _current. */
+    private final String _name;
+    /** The contents of the index, or null until first used. */
+    private ByteBuffer _idx;
+    /** The mapped pack file, or null until first used. */
+    private ByteBuffer _data;
+    /** The number of objects. */
+    private int _count;
+
+    /** The pack in use in the directory DIR.
+     * @param dir d */
+    Pack(File dir) {
+        this(dir, null);
+    }
+
+    /** The pack named NAME in the directory DIR.
+     * @param dir d
+     * @param name n */
+    private Pack(File dir, String name) {
+        _dir = dir;
+        _current = new File(dir, "current");
+        _name = name;
+    }
+
+    /** @return the directory holding the pack. */
+    File getDir() {
+        return _dir;
+    }
+
+    /** @return the name of the pack to read, or null if none has been
+     * written. */
+    private String name() {
+        if (_name != null) {
+            return _name;
+        } else if (_current.isFile()) {
+            return readContentsAsString(_current).trim();
+        } else if (new File(_dir, LEGACY + ".pack").isFile()) {
+            return LEGACY;
+        }
+        return null;
+    }
+
+    /** @return true if the pack holds the object ID.
+     * @param id id */
+    boolean contains(String id) {
+        return load() && find(hexToBytes(id)) >= 0;
+    }
+
+    /** @return the IDs of every object in the pack. */
+    List<String> ids() {
+        ArrayList<String> result = new ArrayList<>();
+        if (!load()) {
+            return result;
+        }
+        byte[] id = new byte[UID_BYTES];
+        for (int i = 0; i < _count; i += 1) {
+            _idx.position(idOffset(i));
+            _idx.get(id);
+            result.add(bytesToHex(id, 0, UID_BYTES));
+        }
+        return result;
+    }
+
+    /** @return the contents of the object ID, or null if it is not here.
+     * @param id id */
+    byte[] read(String id) {
+        Entry e = entry(id);
+        if (e == null) {
+            return null;
+        }
+        try {
+            byte[] contents = inflate(e._data, e._size);
+            if (e._type == DELTA) {
+                return Delta.apply(read(e._base), contents);
+            }
+            return contents;
+        } catch (DataFormatException excp) {
+            throw error("Corrupt pack entry %s.", id);
+        }
+    }
+
+    /** Write the contents of the object ID to OUT. An object stored whole
+     *  is inflated straight out of the mapped pack through a fixed buffer.
+     * @param id id
+     * @param out o
+     * @return false if the object is not in this pack. */
+    boolean copyTo(String id, WritableByteChannel out) {
+        Entry e = entry(id);
+        if (e == null) {
+            return false;
+        }
+        try {
+            if (e._type == DELTA) {
+                ByteBuffer contents = ByteBuffer.wrap(read(id));
+                while (contents.hasRemaining()) {
+                    out.write(contents);
+                }
+                return true;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(e._data);
+                ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+                while (!inflater.finished()) {
+                    buf.clear();
+                    if (inflater.inflate(buf) == 0 && inflater.needsInput()) {
+                        throw error("Corrupt pack entry %s.", id);
+                    }
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        out.write(buf);
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+            return true;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (DataFormatException excp) {
+            throw error("Corrupt pack entry %s.", id);
+        }
+    }
+
+    /** Forget the mappings of the pack, so that it is mapped afresh
+     *  when next used. */
+    void close() {
+        _data = null;
+        _idx = null;
+    }
+
+    /** @return the entry of the object ID, or null if it is not here.
+     * @param id id */
+    private Entry entry(String id) {
+        if (!load()) {
+            return null;
+        }
+        int i = find(hexToBytes(id));
+        if (i < 0) {
+            return null;
+        }
+        ByteBuffer in = _data.duplicate();
+        in.position((int) _idx.getLong(offsetOffset(i)));
+        return new Entry(in);
+    }
+
+    /** Map the index and the pack, unless they are already, checking
+     *  that they belong together.
+     * @return false if no pack has been written. */
+    private boolean load() {
+        if (_idx != null) {
+            return true;
+        }
+        String name = name();
+        if (name == null) {
+            return false;
+        }
+        File idxFile = new File(_dir, name + ".idx");
+        File packFile = new File(_dir, name + ".pack");
+        if (!idxFile.isFile() || !packFile.isFile()) {
+            if (_name == null && !name.equals(name())) {
+                return load();
+            }
+            throw error("Pack %s is missing.", name);
+        }
+        ByteBuffer idx = map(idxFile);
+        ByteBuffer data = map(packFile);
+        if (idx.getInt(0) != IDX_MAGIC || idx.getInt(4) != VERSION
+            || data.getInt(0) != PACK_MAGIC || data.getInt(4) != VERSION) {
+            throw error("Unrecognized pack %s.", name);
+        }
+        if (idx.getInt(8) != data.getInt(8)) {
+            throw error("The index of pack %s does not match it.", name);
+        }
+        _count = idx.getInt(8);
+        _data = data;
+        _idx = idx;
+        return true;
+    }
+
+    /** @return FILE mapped read-only.
+     * @param file f */
+    private static ByteBuffer map(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.READ)) {
+            if (in.size() > MAX_SIZE) {
+                throw error("%s is larger than 2 GiB, the most a pack may be.",
+                            file);
+            }
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** @return the position of the raw ID in the index, or -1.
+     * @param id id */
+    private int find(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : _idx.getInt(HEADER + 4 * (first - 1));
+        int hi = _idx.getInt(HEADER + 4 * first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, id);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** @return the comparison of the I-th ID of the index with ID.
+     * @param i i
+     * @param id id */
+    private int compareAt(int i, byte[] id) {
+        int at = idOffset(i);
+        for (int k = 0; k < UID_BYTES; k += 1) {
+            int c = (_idx.get(at + k) & 0xff) - (id[k] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** @return where the I-th ID starts in the index.
+     * @param i i */
+    private int idOffset(int i) {
+        return HEADER + 4 * FANOUT + UID_BYTES * i;
+    }
+
+    /** @return where the I-th offset starts in the index.
+     * @param i i */
+    private int offsetOffset(int i) {
+        return HEADER + 4 * FANOUT + UID_BYTES * _count + 8 * i;
+    }
+
+    /** Write a new pack into DIR from the objects of SOURCE, replacing any
+     *  pack already there once every object has been read back from it.
+     *  CHAINS lists the versions of each file newest first; each is stored
+     *  as a delta against the one before it when that pays off. Chain
+     *  members not in ALL are skipped, and objects in no chain are stored
+     *  whole.
+     * @param dir d
+     * @param source s
+     * @param all every object ID to pack
+     * @param chains c */
+    static void write(File dir, ObjectStore source, List<String> all,
+                      List<List<String>> chains) {
+        dir.mkdirs();
+        File packTmp = new File(dir, "pack.tmp");
+        File idxTmp = new File(dir, "idx.tmp");
+        try {
+            writeFiles(packTmp, idxTmp, source, all, chains);
+            String name = "pack-" + sha1(packTmp);
+            Files.move(packTmp.toPath(), new File(dir, name + ".pack").toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            Files.move(idxTmp.toPath(), new File(dir, name + ".idx").toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            verify(new Pack(dir, name), all);
+            String old = new Pack(dir).name();
+            writeAtomically(new File(dir, "current"), name);
+            if (old != null && !old.equals(name)) {
+                new File(dir, old + ".pack").delete();
+                new File(dir, old + ".idx").delete();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            packTmp.delete();
+            idxTmp.delete();
+        }
+    }
+
+    /** Check that every object of ALL reads back from PACK with the
+     *  contents it is named by, and delete PACK if one does not.
+     * @param pack p
+     * @param all a */
+    private static void verify(Pack pack, List<String> all) {
+        for (String id : all) {
+            byte[] contents = pack.read(id);
+            if (contents == null || !sha1(contents).equals(id)) {
+                pack.close();
+                new File(pack._dir, pack._name + ".pack").delete();
+                new File(pack._dir, pack._name + ".idx").delete();
+                throw error("The new pack is damaged at %s; it was not used.",
+                            id);
+            }
+        }
+        pack.close();
+    }
+
+    /** Write the pack of the objects ALL of SOURCE, with CHAINS as for
+     *  write, to PACKFILE and its index to IDXFILE.
+     * @param packFile p
+     * @param idxFile i
+     * @param source s
+     * @param all a
+     * @param chains c */
+    private static void writeFiles(File packFile, File idxFile,
+                                   ObjectStore source, List<String> all,
+                                   List<List<String>> chains)
+        throws IOException {
+        HashMap<String, Long> offsets = new HashMap<>();
+        HashMap<String, Integer> depths = new HashMap<>();
+        HashSet<String> packable = new HashSet<>(all);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(packFile)))) {
+            out.writeInt(PACK_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(all.size());
+            for (List<String> chain : chains) {
+                String prev = null;
+                byte[] prevContents = null;
+                for (String id : chain) {
+                    if (!packable.contains(id)) {
+                        continue;
+                    }
+                    byte[] contents = source.read(id);
+                    if (!offsets.containsKey(id)) {
+                        offsets.put(id, (long) out.size());
+                        int depth = 0;
+                        if (prev != null && depths.get(prev) < MAX_DEPTH) {
+                            depth = depths.get(prev) + 1;
+                        }
+                        if (depth == 0 || !writeDelta(out, prev, prevContents,
+                                                      contents)) {
+                            depth = 0;
+                            writeEntry(out, FULL, null, contents);
+                        }
+                        depths.put(id, depth);
+                    }
+                    prev = id;
+                    prevContents = contents;
+                }
+            }
+            for (String id : all) {
+                if (!offsets.containsKey(id)) {
+                    offsets.put(id, (long) out.size());
+                    writeEntry(out, FULL, null, source.read(id));
+                }
+            }
+        }
+        writeIndex(idxFile, offsets);
+    }
+
+    /** Write CONTENTS to OUT as a delta against BASE, whose contents are
+     *  BASECONTENTS, if that is at most half the size of storing it whole.
+     * @param out o
+     * @param base b
+     * @param baseContents bc
+     * @param contents c
+     * @return true if the delta was written. */
+    private static boolean writeDelta(DataOutputStream out, String base,
+                                      byte[] baseContents, byte[] contents)
+        throws IOException {
+        byte[] delta = Delta.create(baseContents, contents);
+        if (delta.length > contents.length / 2) {
+            return false;
+        }
+        writeEntry(out, DELTA, base, delta);
+        return true;
+    }
+
+    /** Write an entry of TYPE holding DATA, against BASE if a delta.
+     * @param out o
+     * @param type t
+     * @param base b
+     * @param data d */
+    private static void writeEntry(DataOutputStream out, int type,
+                                   String base, byte[] data)
+        throws IOException {
+        byte[] deflated = deflate(data);
+        out.writeByte(type);
+        writeVarint(out, data.length);
+        if (base != null) {
+            out.write(hexToBytes(base));
+        }
+        writeVarint(out, deflated.length);
+        out.write(deflated);
+        if (out.size() >= MAX_SIZE) {
+            throw error("The objects do not fit in a pack of 2 GiB.");
+        }
+    }
+
+    /** Write the index of OFFSETS to FILE.
+     * @param file f
+     * @param offsets o */
+    private static void writeIndex(File file, HashMap<String, Long> offsets) {
+        String[] ids = offsets.keySet().toArray(new String[0]);
+        Arrays.sort(ids);
+        ByteBuffer idx = ByteBuffer.allocate(HEADER + 4 * FANOUT
+                + (UID_BYTES + 8) * ids.length);
+        idx.putInt(IDX_MAGIC).putInt(VERSION).putInt(ids.length);
+        int i = 0;
+        for (int b = 0; b < FANOUT; b += 1) {
+            while (i < ids.length
+                   && Integer.parseInt(ids[i].substring(0, 2), 16) <= b) {
+                i += 1;
+            }
+            idx.putInt(i);
+        }
+        for (String id : ids) {
+            idx.put(hexToBytes(id));
+        }
+        for (String id : ids) {
+            idx.putLong(offsets.get(id));
+        }
+        writeContents(file, idx.array());
+    }
+
+    /** @return DATA compressed with Deflater.
+     * @param data d */
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream out =
+                 new DeflaterOutputStream(bytes, deflater)) {
+            out.write(data);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /** @return the remaining bytes of DEFLATED decompressed into SIZE
+     * bytes.
+     * @param deflated d
+     * @param size s */
+    private static byte[] inflate(ByteBuffer deflated, int size)
+        throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] result = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                n += inflater.inflate(result, n, size - n);
+            }
+            return result;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Write the non-negative V to OUT as a varint.
+     * @param out o
+     * @param v v */
+    private static void writeVarint(DataOutputStream out, int v)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Codec.writeVarint(bytes, v);
+        out.write(bytes.toByteArray());
+    }
+
+    /** @return the varint read from IN.
+     * @param in i */
+    private static int readVarint(ByteBuffer in) {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xff;
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    /** The header of one entry of the pack, and its deflated data. */
+    private static class Entry {
+        /** FULL or DELTA. */
+        private final int _type;
+        /** The inflated size. */
+        private final int _size;
+        /** The base of a delta, else null. */
+        private final String _base;
+        /** The deflated data. */
+        private final ByteBuffer _data;
+
+        /** Parse the entry at the position of IN.
+         * @param in i */
+        Entry(ByteBuffer in) {
+            _type = in.get() & 0xff;
+            _size = readVarint(in);
+            if (_type == DELTA) {
+                byte[] raw = new byte[UID_BYTES];
+                in.get(raw);
+                _base = bytesToHex(raw, 0, UID_BYTES);
+            } else {
+                _base = null;
+            }
+            int len = readVarint(in);
+            in.limit(in.position() + len);
+            _data = in.slice();
+        }
+    }
+}
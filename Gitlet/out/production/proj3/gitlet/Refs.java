@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** The branches of a repository and which of them is checked out.
+ *  Each branch is a file in .gitlet/branch holding just the 40-digit ID
+ *  of its commit, and HEAD holds "ref: " and the name of the current
+ *  branch, so moving a branch writes a few bytes whatever the size of
+ *  the commit. Every update goes to a temporary file that is renamed
+ *  over the old one, so a ref is never seen half written.
+ *
+ *  gc() moves the branches into the single file .gitlet/packed-refs,
+ *  one "ID name" line each, sorted by name; a branch file written later
+ *  takes precedence over its line there. Refs written by older versions
+ *  as whole commits are still read.
+ *  @author Mengzhu Sun
+ */
+class Refs {
+
+    /** The prefix of a HEAD that names a branch. */
+    private static final String REF = "ref: ";
+
+    /** The directory of branch files. */
+    private final File _dir;
+    /** The HEAD file. */
+    private final File _head;
+    /** The packed-refs file. */
+    private final File _packed;
+    /** The packed refs by name, or null until read. */
+    private TreeMap<String, String> _packedRefs;
+
+    /** The refs of the repository whose .gitlet directory is GITLET.
+     * @param gitlet g */
+    Refs(File gitlet) {
+        _dir = new File(gitlet, "branch");
+        _head = new File(gitlet, "HEAD");
+        _packed = new File(gitlet, "packed-refs");
+    }
+
+    /** @return the name of the current branch. */
+    String head() {
+        String s = readContentsAsString(_head);
+        if (s.startsWith(REF)) {
+            return s.substring(REF.length()).trim();
+        }
+        return Commit.decode(readContents(_head), false).getBranch();
+    }
+
+    /** Make NAME the current branch.
+     * @param name n */
+    void setHead(String name) {
+        writeAtomically(_head, REF + name + "\n");
+    }
+
+    /** @return the commit ID of the branch NAME, or null if there is no
+     * such branch.
+     * @param name n */
+    String get(String name) {
+        File f = new File(_dir, name);
+        if (f.isFile()) {
+            return parse(readContents(f));
+        }
+        return packed().get(name);
+    }
+
+    /** Point the branch NAME at the commit ID, creating it if need be.
+     * @param name n
+     * @param id id */
+    void set(String name, String id) {
+        File f = new File(_dir, name);
+        f.getParentFile().mkdirs();
+        writeAtomically(f, id + "\n");
+    }
+
+    /** Delete the branch NAME.
+     * @param name n
+     * @return true if there was such a branch */
+    boolean delete(String name) {
+        boolean found = new File(_dir, name).delete();
+        if (packed().remove(name) != null) {
+            writePacked();
+            found = true;
+        }
+        return found;
+    }
+
+    /** @return the names of all branches, sorted. */
+    TreeSet<String> names() {
+        TreeSet<String> result = new TreeSet<>(packed().keySet());
+        result.addAll(WorkTree.filesIn(_dir));
+        return result;
+    }
+
+    /** Move every branch into packed-refs and delete the branch files. */
+    void pack() {
+        List<String> loose = WorkTree.filesIn(_dir);
+        for (String name : loose) {
+            packed().put(name, get(name));
+        }
+        writePacked();
+        for (String name : loose) {
+            new File(_dir, name).delete();
+        }
+    }
+
+    /** @return the commit ID in DATA, the contents of a branch file in
+     * either the current or an older format.
+     * @param data d */
+    private static String parse(byte[] data) {
+        String s = new String(data, StandardCharsets.UTF_8).trim();
+        if (s.length() == UID_LENGTH && s.matches("[0-9a-f]+")) {
+            return s;
+        }
+        return Commit.decode(data, false).getCommitID();
+    }
+
+    /** @return the packed refs, reading them if that has not been done. */
+    private TreeMap<String, String> packed() {
+        if (_packedRefs == null) {
+            _packedRefs = new TreeMap<>();
+            if (_packed.isFile()) {
+                for (String line
+                         : readContentsAsString(_packed).split("\n")) {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        _packedRefs.put(line.substring(space + 1),
+                                        line.substring(0, space));
+                    }
+                }
+            }
+        }
+        return _packedRefs;
+    }
+
+    /** Write the packed refs back. */
+    private void writePacked() {
+        StringBuilder out = new StringBuilder();
+        for (String name : _packedRefs.keySet()) {
+            out.append(_packedRefs.get(name)).append(' ').append(name)
+                .append('\n');
+        }
+        writeAtomically(_packed, out.toString());
+    }
+}
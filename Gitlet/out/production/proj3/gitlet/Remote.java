@@ -2,14 +2,17 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /** @author Mengzhu*/
 public class Remote implements Serializable {
-    /** w. */
-    private File wkdir = new File(System.getProperty("user.dir"));
+    /** Pinned so that remotes written with Java serialization by earlier
+     *  versions can still be read. */
+    private static final long serialVersionUID = -3413800825511741658L;
     /** g. */
-    private File gitlet = new File(wkdir, ".gitlet");
+    private static final File GITLET =
+        Utils.join(System.getProperty("user.dir"), ".gitlet");
 
     /** A hashMap from remote name to remote path to the
      * directory. */
@@ -25,7 +28,35 @@ public class Remote implements Serializable {
     }
     /** d. */
     public void serializeRemote() {
-        File r = new File(gitlet, "remote");
-        Utils.writeObject(r, this);
+        File r = new File(GITLET, "remote");
+        Utils.writeContents(r, encode());
+    }
+
+    /** @return this remote in the binary format of Codec. */
+    byte[] encode() {
+        String[] names = remoteMap.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        Codec.Writer out = new Codec.Writer(Codec.REMOTE);
+        out.varint(names.length);
+        for (String name : names) {
+            out.string(name).string(remoteMap.get(name));
+        }
+        return out.toByteArray();
+    }
+
+    /** @return the remote stored in FILE, in either format.
+     * @param file f */
+    static Remote read(File file) {
+        byte[] data = Utils.readContents(file);
+        if (Codec.isLegacy(data)) {
+            return Codec.readLegacy(data, Remote.class);
+        }
+        Codec.Reader in = new Codec.Reader(data, Codec.REMOTE);
+        HashMap<String, String> m = new HashMap<>();
+        for (long n = in.varint(); n > 0; n -= 1) {
+            String name = in.string();
+            m.put(name, in.string());
+        }
+        return new Remote(m);
     }
 }
@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The staging area, kept in the single file .gitlet/stage: the files
+ *  staged for addition with the blob IDs of their staged contents, and
+ *  the files staged for removal, each sorted by name. The whole file is
+ *  read once, the first time it is needed, and rewritten atomically by
+ *  save(), so staging any number of files costs one sequential write
+ *  and commit and status read it back in one.
+ *
+ *  Earlier versions kept one encoded Blob per staged file in the
+ *  directories addStaging and removeStaging. While there is no stage
+ *  file those are read instead, and the first save() replaces them.
+ *  @author Mengzhu Sun
+ */
+class Stage {
+
+    /** The stage file. */
+    private final File _file;
+    /** Where earlier versions kept the files staged for addition. */
+    private final File _addDir;
+    /** Where earlier versions kept the files staged for removal. */
+    private final File _removeDir;
+    /** The object store of the repository, into which the contents of
+     *  files staged by the first version are written. */
+    private final ObjectStore _objects;
+    /** The blob IDs of the files staged for addition, or null until
+     *  loaded. */
+    private TreeMap<String, String> _added;
+    /** The files staged for removal. */
+    private TreeSet<String> _removed;
+    /** True if the stage changed since it was loaded. */
+    private boolean _dirty;
+
+    /** The stage of the repository whose .gitlet directory is GITLET.
+     * @param gitlet g */
+    Stage(File gitlet) {
+        _file = new File(gitlet, "stage");
+        _addDir = new File(gitlet, "addStaging");
+        _removeDir = new File(gitlet, "removeStaging");
+        _objects = new ObjectStore(gitlet);
+    }
+
+    /** @return the blob IDs of the files staged for addition, by name. */
+    SortedMap<String, String> added() {
+        load();
+        return Collections.unmodifiableSortedMap(_added);
+    }
+
+    /** @return the names of the files staged for removal. */
+    SortedSet<String> removed() {
+        load();
+        return Collections.unmodifiableSortedSet(_removed);
+    }
+
+    /** @return true if nothing is staged. */
+    boolean isEmpty() {
+        load();
+        return _added.isEmpty() && _removed.isEmpty();
+    }
+
+    /** @return true if NAME is staged for addition.
+     * @param name n */
+    boolean isAdded(String name) {
+        load();
+        return _added.containsKey(name);
+    }
+
+    /** @return true if NAME is staged for removal.
+     * @param name n */
+    boolean isRemoved(String name) {
+        load();
+        return _removed.contains(name);
+    }
+
+    /** Stage the contents ID of the file NAME for addition.
+     * @param name n
+     * @param id id */
+    void add(String name, String id) {
+        load();
+        _removed.remove(name);
+        _added.put(name, id);
+        _dirty = true;
+    }
+
+    /** Stage the file NAME for removal.
+     * @param name n */
+    void remove(String name) {
+        load();
+        _added.remove(name);
+        _removed.add(name);
+        _dirty = true;
+    }
+
+    /** Take NAME off the stage, whichever way it is staged.
+     * @param name n */
+    void unstage(String name) {
+        load();
+        if (_added.remove(name) != null | _removed.remove(name)) {
+            _dirty = true;
+        }
+    }
+
+    /** Take everything off the stage. */
+    void clear() {
+        load();
+        if (!isEmpty()) {
+            _added.clear();
+            _removed.clear();
+            _dirty = true;
+        }
+    }
+
+    /** Write the stage back if it changed, replacing it atomically, and
+     *  delete the staging directories of earlier versions. */
+    void save() {
+        if (!_dirty) {
+            return;
+        }
+        Codec.Writer out = new Codec.Writer(Codec.STAGE);
+        out.varint(_added.size());
+        for (String name : _added.keySet()) {
+            out.string(name).hash(_added.get(name));
+        }
+        out.varint(_removed.size());
+        for (String name : _removed) {
+            out.string(name);
+        }
+        Utils.writeAtomically(_file, out.toByteArray());
+        Utils.deleteAll(_addDir);
+        Utils.deleteAll(_removeDir);
+        _dirty = false;
+    }
+
+    /** Rewrite the stage in the current format even if it did not
+     *  change. */
+    void migrate() {
+        load();
+        _dirty = true;
+        save();
+    }
+
+    /** Read the stage if that has not been done yet. */
+    private void load() {
+        if (_added != null) {
+            return;
+        }
+        _added = new TreeMap<>();
+        _removed = new TreeSet<>();
+        if (_file.isFile()) {
+            Codec.Reader in =
+                new Codec.Reader(Utils.readContents(_file), Codec.STAGE);
+            for (long n = in.varint(); n > 0; n -= 1) {
+                String name = in.string();
+                _added.put(name, in.hash());
+            }
+            for (long n = in.varint(); n > 0; n -= 1) {
+                _removed.add(in.string());
+            }
+        } else {
+            for (String name : WorkTree.filesIn(_addDir)) {
+                Blob b = Blob.read(new File(_addDir, name));
+                b.store(_objects);
+                _added.put(b.getName(), b.getBlobID());
+            }
+            _removed.addAll(WorkTree.filesIn(_removeDir));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/** The stat cache kept in .gitlet/index. For every working file that
+ *  has been hashed it records the size, modification time and file key
+ *  (device and inode) seen at the time, along with the blob ID of the
+ *  contents. As long as those are unchanged the file is not read again.
+ *
+ *  A file modified within the resolution of the clock in the same
+ *  instant the index was written could change again without its stat
+ *  data changing, so, as in git, entries whose modification time is not
+ *  older than the index file itself are always re-hashed.
+ *
+ *  hash() may be called from several threads at once.
+ *  @author Mengzhu Sun
+ */
+class StatCache {
+
+    /** The index file. */
+    private final File _file;
+    /** The entries by file name, or null until loaded. */
+    private volatile ConcurrentSkipListMap<String, Entry> _entries;
+    /** Modification time of the index file when it was loaded. */
+    private long _written;
+    /** True if entries changed since loading. */
+    private volatile boolean _dirty;
+
+    /** What was seen of one file when it was last hashed. */
+    private static class Entry {
+        /** The size in bytes. */
+        private final long _size;
+        /** The modification time in nanoseconds. */
+        private final long _mtime;
+        /** The hash of the file key. */
+        private final int _key;
+        /** The blob ID of the contents. */
+        private final String _id;
+
+        /** An entry for ID with stat data SIZE, MTIME and KEY.
+         * @param size s
+         * @param mtime m
+         * @param key k
+         * @param id id */
+        Entry(long size, long mtime, int key, String id) {
+            _size = size;
+            _mtime = mtime;
+            _key = key;
+            _id = id;
+        }
+    }
+
+    /** The stat cache of the repository whose .gitlet directory is GITLET.
+     * @param gitlet g */
+    StatCache(File gitlet) {
+        _file = new File(gitlet, "index");
+    }
+
+    /** @return the blob ID of the contents of the working file F, named
+     * NAME, reading the file only if its stat data changed.
+     * @param name n
+     * @param f f */
+    String hash(String name, File f) {
+        load();
+        BasicFileAttributes attrs = stat(f);
+        long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        int key = attrs.fileKey() == null ? 0 : attrs.fileKey().hashCode();
+        Entry e = _entries.get(name);
+        if (e != null && e._size == attrs.size() && e._mtime == mtime
+            && e._key == key && mtime < _written) {
+            return e._id;
+        }
+        String id = Utils.sha1(f);
+        _entries.put(name, new Entry(attrs.size(), mtime, key, id));
+        _dirty = true;
+        return id;
+    }
+
+    /** Record that the working file F, named NAME, was just written with
+     *  the contents of the blob ID, so it need not be hashed again.
+     * @param name n
+     * @param f f
+     * @param id id */
+    void record(String name, File f, String id) {
+        load();
+        BasicFileAttributes attrs = stat(f);
+        long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        int key = attrs.fileKey() == null ? 0 : attrs.fileKey().hashCode();
+        _entries.put(name, new Entry(attrs.size(), mtime, key, id));
+        _dirty = true;
+    }
+
+    /** Forget every entry whose name is not in NAMES.
+     * @param names n */
+    void retain(Collection<String> names) {
+        load();
+        HashSet<String> keep = new HashSet<>(names);
+        if (_entries.keySet().retainAll(keep)) {
+            _dirty = true;
+        }
+    }
+
+    /** Write the index back if it changed, replacing it atomically. */
+    void save() {
+        if (!_dirty) {
+            return;
+        }
+        Codec.Writer out = new Codec.Writer(Codec.INDEX);
+        out.varint(_entries.size());
+        for (String name : _entries.keySet()) {
+            Entry e = _entries.get(name);
+            out.string(name).varint(e._size).varint(e._mtime)
+                .varint(e._key & 0xffffffffL).hash(e._id);
+        }
+        Utils.writeAtomically(_file, out.toByteArray());
+        _dirty = false;
+    }
+
+    /** Read the index if that has not been done yet. */
+    private synchronized void load() {
+        if (_entries != null) {
+            return;
+        }
+        ConcurrentSkipListMap<String, Entry> entries =
+            new ConcurrentSkipListMap<>();
+        if (!_file.isFile()) {
+            _entries = entries;
+            return;
+        }
+        _written = stat(_file).lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        Codec.Reader in =
+            new Codec.Reader(Utils.readContents(_file), Codec.INDEX);
+        for (long n = in.varint(); n > 0; n -= 1) {
+            String name = in.string();
+            long size = in.varint();
+            long mtime = in.varint();
+            int key = (int) in.varint();
+            entries.put(name, new Entry(size, mtime, key, in.hash()));
+        }
+        _entries = entries;
+    }
+
+    /** @return the attributes of F.
+     * @param f f */
+    private static BasicFileAttributes stat(File f) {
+        try {
+            return Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A scratch directory for tests that run gitlet commands. Gitlet reads
+ *  user.dir once, when its classes load, and opens files relative to the
+ *  working directory of the process, so each command runs in a JVM of
+ *  its own started in the directory, with the class path of this one.
+ *  @author Mengzhu Sun
+ */
+class TestRepo {
+
+    /** The directory. */
+    private final File _dir;
+
+    /** A new, empty scratch directory. */
+    TestRepo() {
+        try {
+            _dir = Files.createTempDirectory("gitlet-test").toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** @return the directory. */
+    File dir() {
+        return _dir;
+    }
+
+    /** @return what the gitlet command ARGS prints, failing if it does
+     * not exit normally.
+     * @param args a */
+    String run(String... args) {
+        ArrayList<String> cp = new ArrayList<>();
+        for (String p : System.getProperty("java.class.path")
+                 .split(File.pathSeparator)) {
+            cp.add(new File(p).getAbsolutePath());
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-cp", String.join(File.pathSeparator, cp), "gitlet.Daemon"));
+        command.addAll(Arrays.asList(args));
+        try {
+            Process p = new ProcessBuilder(command).directory(_dir)
+                .redirectErrorStream(true).start();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = p.getInputStream()) {
+                in.transferTo(out);
+            }
+            String output = out.toString(StandardCharsets.UTF_8);
+            if (p.waitFor() != 0) {
+                throw new AssertionError(String.join(" ", args)
+                                         + " failed:\n" + output);
+            }
+            return output;
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the file NAME with CONTENTS.
+     * @param name n
+     * @param contents c */
+    void write(String name, String contents) {
+        write(name, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write the file NAME with CONTENTS.
+     * @param name n
+     * @param contents c */
+    void write(String name, byte[] contents) {
+        File f = new File(_dir, name);
+        f.getParentFile().mkdirs();
+        Utils.writeContents(f, contents);
+    }
+
+    /** @return the contents of the file NAME.
+     * @param name n */
+    byte[] read(String name) {
+        return Utils.readContents(new File(_dir, name));
+    }
+
+    /** @return the contents of the file NAME as a String.
+     * @param name n */
+    String readString(String name) {
+        return new String(read(name), StandardCharsets.UTF_8);
+    }
+
+    /** @return true if the file NAME exists.
+     * @param name n */
+    boolean exists(String name) {
+        return new File(_dir, name).exists();
+    }
+
+    /** Copy everything below the directory FROM into this one.
+     * @param from f */
+    void copyFrom(File from) {
+        Path src = from.toPath();
+        try {
+            for (Path p : (Iterable<Path>) Files.walk(src)::iterator) {
+                Path dest = _dir.toPath().resolve(src.relativize(p));
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(dest);
+                } else {
+                    Files.copy(p, dest, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete the directory and everything in it. */
+    void delete() {
+        Utils.deleteAll(_dir);
+    }
+}
@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** Copies history from one repository to another on the same machine,
+ *  for fetch and push. Only what the destination lacks is read or
+ *  written: the commits are found by walking back from the tip in the
+ *  commit graph of the source, stopping at every commit the graph of
+ *  the destination already has, and the objects by walking the trees
+ *  of those commits, skipping every tree the destination already has,
+ *  with all below it. So catching up a repository that is a few commits
+ *  behind costs a few commits' worth of work, however long the history.
+ *
+ *  Objects are copied first, each tree after the trees and blobs it
+ *  names, then the commit files, then the rows of the commit graph and
+ *  the message index, parents before children; the caller moves the
+ *  refs last. So at every step a destination that has a tree or a
+ *  commit in its graph has everything below it, and a transfer cut
+ *  short leaves at most some unreferenced objects or commits behind,
+ *  which a later one uses and completes.
+ *  Both repositories must hold commits with trees; run migrate on one
+ *  written by an older version first.
+ *  @author Mengzhu Sun
+ */
+class Transfer {
+
+    /** The commits of the source. */
+    private final FanOutDir _fromCommits;
+    /** The commit graph of the source. */
+    private final CommitGraph _fromGraph;
+    /** The objects of the source. */
+    private final ObjectStore _fromObjects;
+    /** The commits of the destination. */
+    private final FanOutDir _toCommits;
+    /** The commit graph of the destination. */
+    private final CommitGraph _toGraph;
+    /** The objects of the destination. */
+    private final ObjectStore _toObjects;
+    /** The message index of the destination. */
+    private final MessageIndex _toMessages;
+
+    /** The number of commits copied. */
+    private int _commits;
+    /** The number of objects copied. */
+    private int _objects;
+
+    /** A transfer from the repository whose .gitlet directory is FROM to
+     *  the one whose .gitlet directory is TO.
+     * @param from f
+     * @param to t */
+    Transfer(File from, File to) {
+        _fromCommits = new FanOutDir(new File(from, "commit"));
+        _fromGraph = new CommitGraph(from);
+        _fromObjects = new ObjectStore(from);
+        _toCommits = new FanOutDir(new File(to, "commit"));
+        _toGraph = new CommitGraph(to);
+        _toObjects = new ObjectStore(to);
+        _toMessages = new MessageIndex(to);
+    }
+
+    /** Copy the commit ID, and every commit and object it reaches, to
+     *  the destination, leaving out what is already there.
+     * @param id id */
+    void copy(String id) {
+        ArrayList<byte[]> data = new ArrayList<>();
+        ArrayList<Commit> commits = new ArrayList<>();
+        LinkedHashSet<String> objects = new LinkedHashSet<>();
+        for (int pos : missing(id)) {
+            String commitID = _fromGraph.id(pos);
+            byte[] contents = readContents(_fromCommits.file(commitID));
+            if (Codec.isLegacy(contents)
+                || new Codec.Reader(contents, Codec.COMMIT).version() < 2) {
+                throw error("Commit %s has no tree; run migrate first.",
+                            commitID);
+            }
+            Commit c = Commit.decode(contents, false);
+            Tree.missing(_fromObjects, c.getTree(), _toObjects, objects);
+            data.add(contents);
+            commits.add(c);
+        }
+        for (String object : objects) {
+            _toObjects.copyFrom(_fromObjects, object);
+        }
+        for (int i = 0; i < commits.size(); i += 1) {
+            Commit c = commits.get(i);
+            writeContents(_toCommits.create(c.getCommitID()), data.get(i));
+            _toGraph.add(c);
+            _toMessages.add(c);
+        }
+        _commits += commits.size();
+        _objects += objects.size();
+    }
+
+    /** @return the positions in the source graph of the commits that ID
+     * reaches and the destination does not have, sorted, so that every
+     * commit comes after its parents.
+     * @param id id */
+    private TreeSet<Integer> missing(String id) {
+        TreeSet<Integer> result = new TreeSet<>();
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(_fromGraph.require(id));
+        while (!todo.isEmpty()) {
+            int pos = todo.pop();
+            if (pos == CommitGraph.NONE || result.contains(pos)
+                || _toGraph.position(_fromGraph.id(pos))
+                   != CommitGraph.NONE) {
+                continue;
+            }
+            result.add(pos);
+            todo.push(_fromGraph.parent1(pos));
+            todo.push(_fromGraph.parent2(pos));
+        }
+        return result;
+    }
+
+    /** @return the number of commits copied so far. */
+    int commits() {
+        return _commits;
+    }
+
+    /** @return the number of objects copied so far. */
+    int objects() {
+        return _objects;
+    }
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Transfer.
+ *  @author Mengzhu Sun
+ */
+public class TransferTest {
+
+    /** @return the .gitlet directory of REPO.
+     * @param repo r */
+    private static File gitlet(TestRepo repo) {
+        return new File(repo.dir(), ".gitlet");
+    }
+
+    /** @return the root tree of the commit ID of the repository whose
+     * .gitlet directory is GITLET.
+     * @param gitlet g
+     * @param id id */
+    private static String tree(File gitlet, String id) {
+        File f = new FanOutDir(new File(gitlet, "commit")).file(id);
+        return Commit.decode(Utils.readContents(f), false).getTree();
+    }
+
+    /** A copy cut short after any number of objects, each written in
+     *  the order a transfer writes them, is completed by the next one. */
+    @Test
+    public void resumeInterruptedCopy() {
+        TestRepo from = new TestRepo();
+        TestRepo empty = new TestRepo();
+        ArrayList<TestRepo> tos = new ArrayList<>();
+        try {
+            from.run("init");
+            from.write("top.txt", "top\n");
+            from.write("d/one.txt", "one\n");
+            from.write("d/e/two.txt", "two\n");
+            from.write("f/three.txt", "three\n");
+            from.run("add", ".");
+            from.run("commit", "tip");
+            String tip = from.run("find", "tip").trim();
+            String root = tree(gitlet(from), tip);
+            ObjectStore source = new ObjectStore(gitlet(from));
+            empty.run("init");
+
+            LinkedHashSet<String> order = new LinkedHashSet<>();
+            Tree.missing(source, root, new ObjectStore(gitlet(empty)),
+                         order);
+            List<String> objects = new ArrayList<>(order);
+            assertEquals(root, objects.get(objects.size() - 1));
+            for (int k = 0; k <= objects.size(); k += 1) {
+                TestRepo to = new TestRepo();
+                tos.add(to);
+                to.copyFrom(empty.dir());
+                ObjectStore dest = new ObjectStore(gitlet(to));
+                for (String id : objects.subList(0, k)) {
+                    dest.copyFrom(source, id);
+                }
+                new Transfer(gitlet(from), gitlet(to)).copy(tip);
+                LinkedHashSet<String> left = new LinkedHashSet<>();
+                Tree.missing(source, root, dest, left);
+                assertTrue("after " + k + " objects: " + left,
+                           left.isEmpty());
+                for (String id : objects) {
+                    assertTrue(dest.contains(id));
+                }
+                assertEquals(root, tree(gitlet(to), tip));
+            }
+        } finally {
+            from.delete();
+            empty.delete();
+            for (TestRepo to : tos) {
+                to.delete();
+            }
+        }
+    }
+}
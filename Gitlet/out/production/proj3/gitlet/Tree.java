@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** A tree object: the contents of one directory at one commit. Each
+ *  entry names either a file, by its blob ID, or a subdirectory, by the
+ *  ID of its own tree. Trees live in the object store and are named by
+ *  the SHA-1 of their encoding, so a directory whose contents did not
+ *  change between commits is the very same object in both, and two
+ *  trees with equal IDs never need to be compared entry by entry.
+ *
+ *  Paths handed to and returned by the static methods are relative to
+ *  the top of the working directory, with '/' between components.
+ *  @author Mengzhu Sun
+ */
+class Tree {
+
+    /** Entry type of a file. */
+    private static final int FILE = 'F';
+    /** Entry type of a subdirectory. */
+    private static final int DIR = 'D';
+
+    /** The entries, by name. */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+
+    /** One entry of a tree. */
+    private static class Entry {
+        /** True for a subdirectory. */
+        private final boolean _dir;
+        /** The blob or tree ID. */
+        private final String _id;
+
+        /** An entry for the blob or (if DIR) tree ID.
+         * @param dir d
+         * @param id id */
+        Entry(boolean dir, String id) {
+            _dir = dir;
+            _id = id;
+        }
+    }
+
+    /** @return the tree ID read from STORE, or an empty tree if ID is null.
+     * @param store s
+     * @param id id */
+    static Tree read(ObjectStore store, String id) {
+        Tree t = new Tree();
+        if (id == null) {
+            return t;
+        }
+        Codec.Reader in = new Codec.Reader(store.read(id), Codec.TREE);
+        for (long n = in.varint(); n > 0; n -= 1) {
+            boolean dir = in.u8() == DIR;
+            String name = in.string();
+            t._entries.put(name, new Entry(dir, in.hash()));
+        }
+        return t;
+    }
+
+    /** @return the ID of this tree after storing it in STORE.
+     * @param store s */
+    String write(ObjectStore store) {
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        out.varint(_entries.size());
+        for (String name : _entries.keySet()) {
+            Entry e = _entries.get(name);
+            out.u8(e._dir ? DIR : FILE).string(name).hash(e._id);
+        }
+        return store.write(out.toByteArray());
+    }
+
+    /** @return the ID of the tree that results from applying CHANGES to
+     * the tree ROOT (null for an empty one), storing the new trees in
+     * STORE. CHANGES maps each changed path to its new blob ID, or to
+     * null if it is removed. Only the trees on the paths of the changes
+     * are read and rewritten; every other subtree keeps its ID.
+     * Directories left empty are dropped. A file may replace a directory
+     * of the same name, and the other way around, when the changes
+     * remove everything in the one and add the other.
+     * @param store s
+     * @param root r
+     * @param changes c */
+    static String update(ObjectStore store, String root,
+                         Map<String, String> changes) {
+        return apply(store, root, changes).write(store);
+    }
+
+    /** @return the tree ROOT from STORE with CHANGES applied, as for
+     * update(), having stored any changed subtrees but not the result.
+     * @param store s
+     * @param root r
+     * @param changes c */
+    private static Tree apply(ObjectStore store, String root,
+                              Map<String, String> changes) {
+        Tree t = read(store, root);
+        TreeMap<String, TreeMap<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> c : changes.entrySet()) {
+            String path = c.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (c.getValue() == null) {
+                    t._entries.remove(path);
+                } else {
+                    t._entries.put(path, new Entry(false, c.getValue()));
+                }
+            } else {
+                below.computeIfAbsent(path.substring(0, slash),
+                                      k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), c.getValue());
+            }
+        }
+        for (String dir : below.keySet()) {
+            if (changes.get(dir) != null) {
+                continue;
+            }
+            Entry old = t._entries.get(dir);
+            boolean wasDir = old != null && old._dir;
+            Tree child = apply(store, wasDir ? old._id : null, below.get(dir));
+            if (!child._entries.isEmpty()) {
+                t._entries.put(dir, new Entry(true, child.write(store)));
+            } else if (wasDir) {
+                t._entries.remove(dir);
+            }
+        }
+        return t;
+    }
+
+    /** @return the blob ID of the file PATH in the tree ROOT in STORE, or
+     * null if there is no such file. Only the trees on the path are read.
+     * @param store s
+     * @param root r
+     * @param path p */
+    static String find(ObjectStore store, String root, String path) {
+        String id = root;
+        String rest = path;
+        for (int slash = rest.indexOf('/'); slash >= 0;
+             slash = rest.indexOf('/')) {
+            Entry e = read(store, id)._entries.get(rest.substring(0, slash));
+            if (e == null || !e._dir) {
+                return null;
+            }
+            id = e._id;
+            rest = rest.substring(slash + 1);
+        }
+        Entry e = read(store, id)._entries.get(rest);
+        return e == null || e._dir ? null : e._id;
+    }
+
+    /** Add to OUT the tree ID in STORE and every tree and blob below it,
+     * leaving out those already in OUT and those HAVE has, along with
+     * everything below them: a store that has a tree has all of it.
+     * Each tree is added after everything below it, so that objects
+     * copied in the order of OUT keep that true of the copy at every
+     * step, even one cut short.
+     * @param store s
+     * @param id id
+     * @param have h
+     * @param out o */
+    static void missing(ObjectStore store, String id, ObjectStore have,
+                        Set<String> out) {
+        if (out.contains(id) || have.contains(id)) {
+            return;
+        }
+        Tree t = read(store, id);
+        for (Entry e : t._entries.values()) {
+            if (e._dir) {
+                missing(store, e._id, have, out);
+            } else if (!out.contains(e._id) && !have.contains(e._id)) {
+                out.add(e._id);
+            }
+        }
+        out.add(id);
+    }
+
+    /** Add every file under the tree ID in STORE to OUT, mapping its path
+     * (prefixed by PREFIX) to its blob ID.
+     * @param store s
+     * @param id id
+     * @param prefix p
+     * @param out o */
+    static void flatten(ObjectStore store, String id, String prefix,
+                        Map<String, String> out) {
+        Tree t = read(store, id);
+        for (String name : t._entries.keySet()) {
+            Entry e = t._entries.get(name);
+            if (e._dir) {
+                flatten(store, e._id, prefix + name + "/", out);
+            } else {
+                out.put(prefix + name, e._id);
+            }
+        }
+    }
+
+    /** Add to OUT every file path (prefixed by PREFIX) whose blob differs
+     * between the trees A and B in STORE, either of which may be null,
+     * mapped to its pair of blob IDs, null where a side lacks the file.
+     * Subtrees with equal IDs are skipped without being read.
+     * @param store s
+     * @param a a
+     * @param b b
+     * @param prefix p
+     * @param out o */
+    static void diff(ObjectStore store, String a, String b, String prefix,
+                     Map<String, String[]> out) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        Tree ta = read(store, a);
+        Tree tb = read(store, b);
+        TreeSet<String> names = new TreeSet<>(ta._entries.keySet());
+        names.addAll(tb._entries.keySet());
+        for (String name : names) {
+            Entry ea = ta._entries.get(name);
+            Entry eb = tb._entries.get(name);
+            String path = prefix + name;
+            String dirA = ea != null && ea._dir ? ea._id : null;
+            String dirB = eb != null && eb._dir ? eb._id : null;
+            if (dirA != null || dirB != null) {
+                diff(store, dirA, dirB, path + "/", out);
+            }
+            String fileA = ea != null && !ea._dir ? ea._id : null;
+            String fileB = eb != null && !eb._dir ? eb._id : null;
+            if ((fileA != null || fileB != null)
+                && (fileA == null || !fileA.equals(fileB))) {
+                out.put(path, new String[] {fileA, fileB});
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Tree.
+ *  @author Mengzhu Sun
+ */
+public class TreeTest {
+
+    /** @return the files of the tree ROOT in STORE, by path.
+     * @param store s
+     * @param root r */
+    private static Map<String, String> files(ObjectStore store, String root) {
+        TreeMap<String, String> result = new TreeMap<>();
+        Tree.flatten(store, root, "", result);
+        return result;
+    }
+
+    /** @return a map of the paths and IDs in PAIRS, an ID of null meaning
+     * a removal.
+     * @param pairs p */
+    private static Map<String, String> changes(String... pairs) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put(pairs[i], pairs[i + 1]);
+        }
+        return result;
+    }
+
+    /** A file replaces a directory of the same name, and a directory a
+     *  file, when everything in the one is removed and the other added;
+     *  in both cases the new entry is kept. */
+    @Test
+    public void swapFileAndDirectory() {
+        TestRepo repo = new TestRepo();
+        try {
+            ObjectStore store =
+                new ObjectStore(new File(repo.dir(), ".gitlet"));
+            String x = store.write("x".getBytes(StandardCharsets.UTF_8));
+            String y = store.write("y".getBytes(StandardCharsets.UTF_8));
+
+            String dirs = Tree.update(store, null,
+                                      changes("a/b", x, "a/c/d", x));
+            String file = Tree.update(store, dirs,
+                                      changes("a/b", null, "a/c/d", null,
+                                              "a", y));
+            assertEquals(changes("a", y), files(store, file));
+            assertEquals(y, Tree.find(store, file, "a"));
+
+            String back = Tree.update(store, file,
+                                      changes("a", null, "a/c/d", x));
+            assertEquals(changes("a/c/d", x), files(store, back));
+            assertNull(Tree.find(store, back, "a"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** Removing a path below a file leaves the file alone. */
+    @Test
+    public void removeBelowFile() {
+        TestRepo repo = new TestRepo();
+        try {
+            ObjectStore store =
+                new ObjectStore(new File(repo.dir(), ".gitlet"));
+            String x = store.write("x".getBytes(StandardCharsets.UTF_8));
+            String root = Tree.update(store, null, changes("a", x));
+            root = Tree.update(store, root, changes("a/b", null));
+            assertEquals(changes("a", x), files(store, root));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** A file committed in place of a tracked directory, and then a
+     *  directory in place of the file, are tracked and checked out. */
+    @Test
+    public void swapThroughCommands() {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            repo.write("a/b", "b\n");
+            repo.run("add", "a/b");
+            repo.run("commit", "directory");
+            repo.run("rm", "a/b");
+            new File(repo.dir(), "a").delete();
+            repo.write("a", "file\n");
+            repo.run("add", "a");
+            repo.run("commit", "file");
+            assertFalse(repo.run("status").contains("Untracked Files ===\na"));
+            repo.write("a", "changed\n");
+            repo.run("checkout", "--", "a");
+            assertEquals("file\n", repo.readString("a"));
+
+            repo.run("rm", "a");
+            repo.write("a/c", "c\n");
+            repo.run("add", "a/c");
+            repo.run("commit", "directory again");
+            repo.write("a/c", "changed\n");
+            repo.run("checkout", "--", "a/c");
+            assertEquals("c\n", repo.readString("a/c"));
+        } finally {
+            repo.delete();
+        }
+    }
+}
@@ -6,11 +6,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -53,12 +55,57 @@ class Utils {
         }
     }
 
+    /** The size of the buffer used to stream files. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Returns the SHA-1 hash of the contents of FILE, read through a
+     *  fixed buffer so that files larger than memory can be hashed.
+     *  Throws IllegalArgumentException in case of problems. */
+    static String sha1(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[BUFFER_SIZE];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                md.update(buf, 0, n);
+            }
+            return bytesToHex(md.digest(), 0, UID_BYTES);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** The length of a SHA-1 UID in bytes. */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Returns the UID_BYTES raw bytes of the hexadecimal UID ID. */
+    static byte[] hexToBytes(String id) {
+        byte[] result = new byte[id.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) Integer.parseInt(id.substring(2 * i,
+                                                            2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /** Returns the LEN bytes of BYTES starting at START as a hexadecimal
+     *  numeral. */
+    static String bytesToHex(byte[] bytes, int start, int len) {
+        StringBuilder result = new StringBuilder(2 * len);
+        for (int i = start; i < start + len; i += 1) {
+            result.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            result.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return result.toString();
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -84,6 +131,23 @@ class Utils {
         return restrictedDelete(new File(file));
     }
 
+    /** Deletes FILE and, if it is a directory, everything under it,
+     *  as far as it can. A symbolic link is deleted, not what it points
+     *  to. Unlike restrictedDelete, this is for gitlet's own files, not
+     *  the user's. */
+    static void deleteAll(File file) {
+        File[] children = null;
+        if (!Files.isSymbolicLink(file.toPath())) {
+            children = file.listFiles();
+        }
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
     /* READING AND WRITING FILE CONTENTS */
 
     /** Return the entire contents of FILE as a byte array.  FILE must
@@ -133,6 +197,21 @@ class Utils {
         }
     }
 
+    /** Write CONTENTS to FILE as writeContents does, but into a temporary
+     *  file that is then renamed over FILE, so that a reader sees either
+     *  the old contents or the new, never part of them. */
+    static void writeAtomically(File file, Object... contents) {
+        File tmp = new File(file.getPath() + ".tmp");
+        writeContents(tmp, contents);
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -227,6 +306,15 @@ class Utils {
         return new GitletException(String.format(msg, args));
     }
 
+    /** End the current command: exit, unless the command is being run by
+     *  a Daemon, which then goes on to the next one. */
+    static void exit() {
+        if (Daemon.serving()) {
+            throw new Daemon.Exit();
+        }
+        System.exit(0);
+    }
+
     /** Print a message composed from MSG and ARGS as for the String.format
      *  method, followed by a newline. */
     static void message(String msg, Object... args) {
@@ -0,0 +1,223 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/** The working directory as gitlet sees it: the files it may track and
+ *  their blob IDs. Hashing runs on a ForkJoinPool, so on a machine with
+ *  many cores and a fast disk status and add are limited by the disk
+ *  rather than by one thread. Results are always returned sorted by
+ *  name, whatever order the work finished in. Files are named by their
+ *  path from the top of the working directory, with '/' between the
+ *  components, and every subdirectory but .gitlet is searched, without
+ *  following symbolic links to directories.
+ *
+ *  The pool size is the gitlet.threads system property (default: the
+ *  number of processors) and the number of files being read at once is
+ *  capped by gitlet.io (default: IO_DEFAULT), so that on a machine with
+ *  many cores a slow disk is not swamped with requests. The smaller of
+ *  the two is the bound.
+ *  @author Mengzhu Sun
+ */
+class WorkTree {
+
+    /** Files at the top of the working directory that are not reported
+     *  as untracked, nor picked up by a directory or pattern given to
+     *  add. They may still be added by name, and once tracked they are
+     *  treated like any other file. The same names in a subdirectory
+     *  are not ignored. */
+    static final Set<String> IGNORED = Set.of(".DS_Store", "Makefile",
+            "proj3.iml", ".gitignore", "gitlet-design.txt");
+
+    /** The characters that make a path on the command line a pattern. */
+    private static final String GLOB_CHARS = "*?[{";
+
+    /** Below this many files, hashing is not worth handing to a pool. */
+    private static final int PARALLEL_MIN = 64;
+
+    /** The most files read at once unless gitlet.io says otherwise: a
+     *  few requests in flight keep a disk busy without flooding it. */
+    static final int IO_DEFAULT = 4;
+
+    /** The working directory. */
+    private final File _dir;
+    /** The stat cache consulted before reading any file. */
+    private final StatCache _stat;
+
+    /** The working directory DIR, hashed through STAT.
+     * @param dir d
+     * @param stat s */
+    WorkTree(File dir, StatCache stat) {
+        _dir = dir;
+        _stat = stat;
+    }
+
+    /** @return the number of threads to hash with. */
+    static int threads() {
+        return Math.max(1, Integer.getInteger("gitlet.threads",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** @return the most files to read at the same time. */
+    static int maxInFlight() {
+        return Math.max(1, Integer.getInteger("gitlet.io", IO_DEFAULT));
+    }
+
+    /** @return PATH, a file named on the command line, in the form
+     * used for tracked files: relative, normalized and '/'-separated.
+     * @param path p */
+    static String relativize(String path) {
+        String name = Paths.get(path).normalize().toString();
+        return name.replace(File.separatorChar, '/');
+    }
+
+    /** @return the names of the files PATHS, given on the command line,
+     * stand for. A plain path stands for itself, whether or not there
+     * is such a file; a directory for the files below it; and a pattern
+     * with any of the characters *?[{ for the files it matches, in the
+     * syntax of FileSystem.getPathMatcher, where * stays within one
+     * directory and ** does not. Directories and patterns are matched
+     * against the names CANDIDATES supplies, which are only listed if
+     * some path needs them.
+     * @param paths p
+     * @param candidates c */
+    TreeSet<String> expand(String[] paths,
+                           Supplier<Collection<String>> candidates) {
+        TreeSet<String> result = new TreeSet<>();
+        TreeSet<String> names = null;
+        for (String path : paths) {
+            String name = relativize(path);
+            boolean glob = false;
+            for (char c : GLOB_CHARS.toCharArray()) {
+                glob |= path.indexOf(c) >= 0;
+            }
+            boolean dir = !glob && new File(_dir, name).isDirectory();
+            if (!glob && !dir) {
+                result.add(name);
+                continue;
+            }
+            if (names == null) {
+                names = new TreeSet<>(candidates.get());
+            }
+            if (dir) {
+                String prefix = name.isEmpty() ? "" : name + "/";
+                result.addAll(names.subSet(prefix,
+                                           prefix + Character.MAX_VALUE));
+                continue;
+            }
+            PathMatcher m =
+                FileSystems.getDefault().getPathMatcher("glob:" + name);
+            boolean matched = false;
+            for (String n : names) {
+                if (m.matches(Paths.get(n))) {
+                    result.add(n);
+                    matched = true;
+                }
+            }
+            if (!matched) {
+                throw Utils.error("File does not exist.");
+            }
+        }
+        return result;
+    }
+
+    /** @return true if the file NAME, a path from the top of the working
+     * directory, is one of the IGNORED files there.
+     * @param name n */
+    static boolean ignored(String name) {
+        return IGNORED.contains(name);
+    }
+
+    /** @return the sorted paths of all plain files in the working
+     * directory, but for those in .gitlet, whether or not ignored. */
+    List<String> files() {
+        ArrayList<String> result = new ArrayList<>();
+        collect(_dir, "", true, result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** @return the sorted paths of all plain files below DIR.
+     * @param dir d */
+    static List<String> filesIn(File dir) {
+        ArrayList<String> result = new ArrayList<>();
+        collect(dir, "", false, result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Add to OUT the path, prefixed by PREFIX, of every plain file below
+     *  DIR, leaving out .gitlet if SKIP. Symbolic links to directories
+     *  are not followed, since one pointing above itself would make the
+     *  search endless; links to files are taken as the files.
+     * @param dir d
+     * @param prefix p
+     * @param skip s
+     * @param out o */
+    private static void collect(File dir, String prefix, boolean skip,
+                                List<String> out) {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File f : entries) {
+            String name = f.getName();
+            if (skip && name.equals(".gitlet")) {
+                continue;
+            }
+            if (Files.isDirectory(f.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                collect(f, prefix + name + "/", skip, out);
+            } else if (f.isFile()) {
+                out.add(prefix + name);
+            }
+        }
+    }
+
+    /** @return the blob ID of each file in NAMES, sorted by name.
+     * @param names n */
+    TreeMap<String, String> hash(Collection<String> names) {
+        TreeMap<String, String> result = new TreeMap<>();
+        int threads = threads();
+        if (threads == 1 || names.size() < PARALLEL_MIN) {
+            for (String name : names) {
+                result.put(name, _stat.hash(name, new File(_dir, name)));
+            }
+            return result;
+        }
+        ConcurrentHashMap<String, String> ids = new ConcurrentHashMap<>();
+        Semaphore inFlight = new Semaphore(maxInFlight());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> names.parallelStream().forEach(name -> {
+                inFlight.acquireUninterruptibly();
+                try {
+                    ids.put(name, _stat.hash(name, new File(_dir, name)));
+                } finally {
+                    inFlight.release();
+                }
+            })).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        result.putAll(ids);
+        return result;
+    }
+}
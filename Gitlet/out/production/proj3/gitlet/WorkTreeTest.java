@@ -0,0 +1,92 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of which working files gitlet sees.
+ *  @author Mengzhu Sun
+ */
+public class WorkTreeTest {
+
+    /** @return the part of the status of REPO from the heading SECTION
+     * up to the next heading.
+     * @param repo r
+     * @param section s */
+    private static String section(TestRepo repo, String section) {
+        String status = repo.run("status");
+        int start = status.indexOf("=== " + section + " ===\n");
+        assertTrue(status, start >= 0);
+        start = status.indexOf('\n', start) + 1;
+        int end = status.indexOf("===", start);
+        return status.substring(start, end < 0 ? status.length() : end);
+    }
+
+    /** An untracked ignored file is ignored only at the top of the
+     *  tree; one of the same name in a subdirectory is added. */
+    @Test
+    public void untrackedIgnored() {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            repo.write("Makefile", "top\n");
+            repo.write("sub/Makefile", "sub\n");
+            repo.write("a.txt", "a\n");
+            assertEquals("a.txt\nsub/Makefile\n \n",
+                         section(repo, "Untracked Files"));
+            repo.run("add", ".");
+            assertEquals("a.txt\nsub/Makefile\n \n",
+                         section(repo, "Staged Files"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** An ignored file that is tracked anyway is not taken for deleted,
+     *  and its changes are seen. */
+    @Test
+    public void trackedIgnored() {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            repo.write("Makefile", "top\n");
+            repo.run("add", "Makefile");
+            repo.run("commit", "add Makefile");
+            assertEquals("\n", section(repo, "Modifications Not Staged For "
+                                       + "Commit"));
+            repo.write("Makefile", "changed\n");
+            assertEquals("Makefile (modified)\n\n",
+                         section(repo, "Modifications Not Staged For "
+                                 + "Commit"));
+            repo.run("checkout", "--", "Makefile");
+            assertEquals("top\n", repo.readString("Makefile"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** Symbolic links to directories are not followed, so a link to a
+     *  directory above it does not make the search endless. */
+    @Test
+    public void symlinkedDirectories() throws IOException {
+        TestRepo repo = new TestRepo();
+        try {
+            repo.run("init");
+            repo.write("sub/a.txt", "a\n");
+            File sub = new File(repo.dir(), "sub");
+            Files.createSymbolicLink(new File(sub, "up").toPath(),
+                                     Paths.get(".."));
+            Files.createSymbolicLink(new File(sub, "again").toPath(),
+                                     Paths.get(".."));
+            assertEquals("sub/a.txt\n \n", section(repo, "Untracked Files"));
+            repo.run("add", ".");
+            assertEquals("sub/a.txt\n \n", section(repo, "Staged Files"));
+        } finally {
+            repo.delete();
+        }
+    }
+}
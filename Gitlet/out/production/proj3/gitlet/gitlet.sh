@@ -0,0 +1,42 @@
+#!/bin/sh
+# The gitlet command, without a JVM for each run.
+#
+#     gitlet.sh ARGS...         run the gitlet command ARGS
+#     gitlet.sh --daemon        serve the repository in the current
+#                               directory (see Daemon.java)
+#     gitlet.sh --stop          stop it
+#
+# If a daemon is serving the repository in the current directory, ARGS
+# are sent to it over .gitlet/daemon.sock with socat or, failing that,
+# nc -U, each followed by a NUL byte, and its response is copied to
+# standard output, so a command costs a fork of a small process rather
+# than the start of a JVM. Otherwise, or when neither is installed,
+# the command runs in a new JVM as $GITLET_JAVA, which defaults to
+# running gitlet.Daemon from the classes next to this script.
+#
+# The script may be linked into a directory on PATH under any name.
+#
+# @author Mengzhu Sun
+
+socket=.gitlet/daemon.sock
+home=$(dirname "$(readlink -f "$0")")/..
+: "${GITLET_JAVA:=java -cp $home gitlet.Daemon}"
+
+if command -v socat > /dev/null; then
+    client="socat -t 86400 - UNIX-CONNECT:$socket"
+elif command -v nc > /dev/null; then
+    client="nc -UN $socket"
+else
+    client=
+fi
+
+# An empty request is answered with nothing, so it tells whether a daemon
+# is listening without running a command twice if it is not.
+if [ -n "$client" ] && [ -S "$socket" ] && [ $# -gt 0 ] \
+   && [ "$1" != --daemon ] && $client < /dev/null > /dev/null 2>&1; then
+    for arg in "$@"; do
+        printf '%s\0' "$arg"
+    done | $client
+    exit
+fi
+exec $GITLET_JAVA "$@"